@@ -0,0 +1,277 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Asynchronous facade of a Session. Every operation runs on the executor given to the constructor and returns
+ * a CompletableFuture, so callers on an event loop never block on the file system. Failures complete the future
+ * exceptionally with the same exception the Session method throws (e.g. NoSuchFileOrDirectory).
+ * <p>
+ * Concurrent identical reads are coalesced: while a read is running, the same read with the same arguments
+ * does not run again but waits for the running one, so one find serves all callers that ask for it meanwhile.
+ * A read never joins one that was started before a change through this facade completed, so callers see their
+ * own changes. Changes made through other sessions are seen like by any concurrent read.
+ * <p>
+ * Operations run concurrently with each other in no particular order. Callers that need an order, e.g. a
+ * createEmptyFile before a writeFile, or a relative path after enterDirectory, have to wait for the first future.
+ */
+public class AsyncHackerFS {
+    // an operation of the session, with the checked exceptions it may throw
+    private interface Operation<T> {
+        T run() throws Exception;
+    }
+
+    private final Session session;
+    private final Executor executor;
+    private final Map<List<Object>, CompletableFuture<?>> inFlight = new ConcurrentHashMap<>(); // running reads
+    private final AtomicLong changes = new AtomicLong(); // completed changes, part of the key of reads
+
+    /**
+     * The constructor
+     *
+     * @param fs       the file system, a new session is opened on it
+     * @param executor runs the operations
+     */
+    public AsyncHackerFS(HackerFS fs, Executor executor) {
+        this(fs.openSession(), executor);
+    }
+
+    /**
+     * The constructor
+     *
+     * @param session  runs the operations and holds the working directory
+     * @param executor runs the operations
+     */
+    public AsyncHackerFS(Session session, Executor executor) {
+        this.session = session;
+        this.executor = executor;
+    }
+
+    // ----------------------------------------------------
+    // Helpers
+
+    // runs operation on the executor
+    private <T> CompletableFuture<T> submit(Operation<T> operation, CompletableFuture<T> future) {
+        try {
+            this.executor.execute(() -> {
+                try {
+                    future.complete(operation.run());
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    // counts the change before completing its future, so that reads issued afterwards do not join older ones
+    private <T> CompletableFuture<T> change(Operation<T> operation) {
+        return submit(() -> {
+            try {
+                return operation.run();
+            } finally {
+                this.changes.incrementAndGet();
+            }
+        }, new CompletableFuture<>());
+    }
+
+    /**
+     * @param key       the name and the arguments of the operation
+     * @param operation the read
+     * @return a future of its own for every caller, so that cancelling it does not affect the other callers
+     */
+    @SuppressWarnings("unchecked")
+    private <T> CompletableFuture<T> read(Operation<T> operation, Object... key) {
+        List<Object> k = new ArrayList<>(key.length + 1);
+        k.add(this.changes.get());
+        k.addAll(Arrays.asList(key));
+        CompletableFuture<T> future = new CompletableFuture<>();
+        CompletableFuture<?> running = this.inFlight.putIfAbsent(k, future);
+        if (running != null) return (CompletableFuture<T>) running.copy();
+        future.whenComplete((result, failure) -> this.inFlight.remove(k, future));
+        return submit(operation, future).copy();
+    }
+
+    // ----------------------------------------------------
+    // Directory Functions
+
+    // calls corresponding function of Session class
+    public CompletableFuture<Void> enterDirectory() {
+        return change(() -> {
+            this.session.enterDirectory();
+            return null;
+        });
+    }
+
+    // calls corresponding function of Session class
+    public CompletableFuture<Void> enterDirectory(String name) {
+        return change(() -> {
+            this.session.enterDirectory(name);
+            return null;
+        });
+    }
+
+    // calls corresponding function of Session class
+    public CompletableFuture<Void> leaveDirectory() {
+        return change(() -> {
+            this.session.leaveDirectory();
+            return null;
+        });
+    }
+
+    // calls corresponding function of Session class
+    public CompletableFuture<String> getWorkingDirectory() {
+        return read(this.session::getWorkingDirectory, "getWorkingDirectory");
+    }
+
+    // calls corresponding function of Session class
+    public CompletableFuture<Void> createDirectory(String name) {
+        return createDirectory(name, false);
+    }
+
+    // calls corresponding function of Session class
+    public CompletableFuture<Void> createDirectory(String name, boolean concurrent) {
+        return change(() -> {
+            this.session.createDirectory(name, concurrent);
+            return null;
+        });
+    }
+
+    // ----------------------------------------------------
+    // File Functions
+
+    // calls corresponding function of Session class
+    public CompletableFuture<Void> createEmptyFile(String name) {
+        return change(() -> {
+            this.session.createEmptyFile(name);
+            return null;
+        });
+    }
+
+    // calls corresponding function of Session class
+    public CompletableFuture<Void> createEntries(Collection<NewEntry> entries) {
+        List<NewEntry> copy = new ArrayList<>(entries); // the caller may reuse entries before the task runs
+        return change(() -> {
+            this.session.createEntries(copy);
+            return null;
+        });
+    }
+
+    // calls corresponding function of Session class
+    public CompletableFuture<Void> writeFile(String name, String content) {
+        return change(() -> {
+            this.session.writeFile(name, content);
+            return null;
+        });
+    }
+
+    // calls corresponding function of Session class
+    public CompletableFuture<Void> writeFileBytes(String name, byte[] content) {
+        byte[] copy = content == null ? null : content.clone(); // the caller may reuse content before the task runs
+        return change(() -> {
+            this.session.writeFileBytes(name, copy);
+            return null;
+        });
+    }
+
+    // calls corresponding function of Session class
+    public CompletableFuture<String> readFile(String name) {
+        return read(() -> this.session.readFile(name), "readFile", name);
+    }
+
+    // calls corresponding function of Session class; every caller gets an array of its own
+    public CompletableFuture<byte[]> readFileBytes(String name) {
+        CompletableFuture<byte[]> read = read(() -> this.session.readFileBytes(name), "readFileBytes", name);
+        return read.thenApply(bytes -> bytes == null ? null : bytes.clone());
+    }
+
+    // ----------------------------------------------------
+    // Functions involving both Files and Directories
+
+    // calls corresponding function of Session class
+    public CompletableFuture<Void> remove(String name) {
+        return change(() -> {
+            this.session.remove(name);
+            return null;
+        });
+    }
+
+    // calls corresponding function of Session class
+    public CompletableFuture<Void> removeRecursive(String name) {
+        return change(() -> {
+            this.session.removeRecursive(name);
+            return null;
+        });
+    }
+
+    // calls corresponding function of Session class
+    public CompletableFuture<Void> move(String source, String target) {
+        return change(() -> {
+            this.session.move(source, target);
+            return null;
+        });
+    }
+
+    // calls corresponding function of Session class
+    public CompletableFuture<Void> copy(String source, String target) {
+        return change(() -> {
+            this.session.copy(source, target);
+            return null;
+        });
+    }
+
+    // calls corresponding function of Session class
+    public CompletableFuture<String> diskUsage() {
+        return read(this.session::diskUsage, "diskUsage");
+    }
+
+    // calls corresponding function of Session class
+    public CompletableFuture<String> diskUsage(String path) {
+        return read(() -> this.session.diskUsage(path), "diskUsage", path);
+    }
+
+    // calls corresponding function of Session class
+    public CompletableFuture<FSObject> resolve(String path) {
+        return read(() -> this.session.resolve(path), "resolve", path);
+    }
+
+    // calls corresponding function of Session class
+    public CompletableFuture<Void> enableSortedIndex() {
+        return change(() -> {
+            this.session.enableSortedIndex();
+            return null;
+        });
+    }
+
+    // calls corresponding function of Session class
+    public CompletableFuture<String> listPrefix(String prefix) {
+        return read(() -> this.session.listPrefix(prefix), "listPrefix", prefix);
+    }
+
+    // calls corresponding function of Session class
+    public CompletableFuture<String> list() {
+        return read(this.session::list, "list");
+    }
+
+    // calls corresponding function of Session class
+    public CompletableFuture<String> listLong() {
+        return read(this.session::listLong, "listLong");
+    }
+
+    // calls corresponding function of Session class
+    public CompletableFuture<String> find() {
+        return read(this.session::find, "find");
+    }
+
+    // calls corresponding function of Session class
+    public CompletableFuture<String> find(String name) {
+        return read(() -> this.session.find(name), "find", name);
+    }
+
+    // calls corresponding function of Session class
+    public CompletableFuture<String> findParallel(String name) {
+        return read(() -> this.session.findParallel(name), "findParallel", name);
+    }
+}
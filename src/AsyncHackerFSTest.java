@@ -0,0 +1,86 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AsyncHackerFSTest {
+    private final Deque<Runnable> tasks = new ArrayDeque<>();
+    private final Executor queue = this.tasks::add; // runs tasks only when the test says so
+    private HackerFS fs;
+    private AsyncHackerFS async;
+
+    @BeforeEach
+    public void setUp() throws AlreadyExists, NoSuchFileOrDirectory {
+        fs = new HackerFS();
+        fs.createDirectory("d1");
+        fs.createEmptyFile("f1.txt");
+        fs.writeFile("/f1.txt", "Hello");
+        async = new AsyncHackerFS(fs, queue);
+    }
+
+    private void runTasks() {
+        while (!tasks.isEmpty()) tasks.poll().run();
+    }
+
+    @Test
+    public void testOperations() throws Exception {
+        AsyncHackerFS direct = new AsyncHackerFS(fs, Runnable::run);
+        direct.enterDirectory("d1").get();
+        direct.createEmptyFile("f2.txt").get();
+        direct.writeFile("f2.txt", "World!").get();
+        assertEquals("World!", direct.readFile("f2.txt").get());
+        direct.writeFileBytes("f2.txt", new byte[]{1, 2, 3}).get();
+        assertArrayEquals(new byte[]{1, 2, 3}, direct.readFileBytes("f2.txt").get());
+        direct.writeFile("f2.txt", "World!").get();
+        assertEquals("/d1/", direct.getWorkingDirectory().get());
+        assertEquals("/", fs.getWorkingDirectory()); // the facade has a session of its own
+        assertEquals("11 bytes in 2 files and 1 directories, largest file 6 bytes", direct.diskUsage("/").get());
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> direct.readFile("nope").get());
+        assertTrue(e.getCause() instanceof NoSuchFileOrDirectory);
+        e = assertThrows(ExecutionException.class, () -> direct.createEmptyFile("f2.txt").get());
+        assertTrue(e.getCause() instanceof AlreadyExists);
+        direct.remove("/d1").handle((result, failure) -> {
+            assertTrue(failure instanceof NotEmpty);
+            return null;
+        }).get();
+    }
+
+    @Test
+    public void testCoalescedReads() throws Exception {
+        CompletableFuture<String> first = async.find();
+        CompletableFuture<String> second = async.find();
+        CompletableFuture<String> other = async.find("f1");
+        assertEquals(2, tasks.size()); // second waits for first
+        second.cancel(false); // does not affect the other callers
+        runTasks();
+        assertEquals("/d1/\n/f1.txt\n", first.get());
+        assertTrue(second.isCancelled());
+        assertEquals("/f1.txt\n", other.get());
+
+        // a completed read is not reused
+        CompletableFuture<String> third = async.find();
+        assertEquals(1, tasks.size());
+        runTasks();
+        assertEquals(first.get(), third.get());
+    }
+
+    @Test
+    public void testReadsAfterChanges() throws Exception {
+        CompletableFuture<String> before = async.readFile("f1.txt");
+        CompletableFuture<Void> write = async.writeFile("f1.txt", "World!");
+        tasks.pollLast().run(); // the write completes while the read is still queued
+        assertTrue(write.isDone());
+        CompletableFuture<String> after = async.readFile("f1.txt");
+        assertEquals(2, tasks.size()); // does not join the read started before the write
+        runTasks();
+        assertEquals("World!", after.get());
+        assertEquals("World!", before.get()); // ran after the write as well
+    }
+}
@@ -0,0 +1,571 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Rough micro benchmarks for HackerFS. Run with the name of a benchmark as argument, or without
+ * arguments to run all of them. Numbers are indicative only (no warm-up control, no forking).
+ */
+public class Benchmarks {
+    private static final Map<String, Runnable> BENCHMARKS = new LinkedHashMap<>();
+
+    static {
+        BENCHMARKS.put("childtable", Benchmarks::childTable);
+        BENCHMARKS.put("inode", Benchmarks::inode);
+        BENCHMARKS.put("walker", Benchmarks::walker);
+        BENCHMARKS.put("parallelfind", Benchmarks::parallelFind);
+        BENCHMARKS.put("trigram", Benchmarks::trigram);
+        BENCHMARKS.put("bulk", Benchmarks::bulk);
+        BENCHMARKS.put("snapshot", Benchmarks::snapshot);
+        BENCHMARKS.put("concurrent", Benchmarks::concurrent);
+        BENCHMARKS.put("spool", Benchmarks::spool);
+        BENCHMARKS.put("sessions", Benchmarks::sessions);
+        BENCHMARKS.put("async", Benchmarks::async);
+        BENCHMARKS.put("content", Benchmarks::content);
+    }
+
+    public static void main(String[] args) {
+        Collection<String> names = args.length == 0 ? BENCHMARKS.keySet() : Arrays.asList(args);
+        for (String name : names) {
+            Runnable benchmark = BENCHMARKS.get(name);
+            if (benchmark == null) System.out.println("Unknown benchmark: " + name);
+            else benchmark.run();
+        }
+    }
+
+    // ----------------------------------------------------
+    // Helpers
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long gcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+
+    private static void print(String format, Object... args) {
+        System.out.println(String.format(Locale.ROOT, format, args));
+    }
+
+    // ----------------------------------------------------
+    // Benchmarks
+
+    /**
+     * Bytes per entry and lookup latency of directories with few and with many entries.
+     * The same File objects are added to every directory, so only the directory and its child table are measured.
+     */
+    private static void childTable() {
+        print("%-10s %12s %16s", "entries", "bytes/entry", "lookup ns/op");
+        int[] sizes = {1, 4, 8, 16, 1_000, 1_000_000};
+        for (int entries : sizes) {
+            File[] files = new File[entries];
+            for (int i = 0; i < entries; i++) files[i] = new File("file-" + i + ".txt", null);
+            int directories = Math.max(1, 2_000_000 / entries);
+
+            long before = usedHeap();
+            Directory[] dirs = new Directory[directories];
+            try {
+                for (int d = 0; d < directories; d++) {
+                    dirs[d] = new Directory("d" + d, null);
+                    for (File f : files) dirs[d].addEntry(f);
+                }
+            } catch (AlreadyExists e) {
+                throw new IllegalStateException(e);
+            }
+            long bytes = usedHeap() - before;
+
+            int lookups = 5_000_000;
+            long hits = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < lookups; i++) {
+                Directory dir = dirs[i % directories];
+                if (dir.contains(files[(i * 31) % entries].getName()).isPresent()) hits++;
+            }
+            long elapsed = System.nanoTime() - start;
+            if (hits != lookups) throw new IllegalStateException("lookup failed");
+
+            print("%-10d %12.1f %16.1f", entries, (double) bytes / ((long) directories * entries),
+                    (double) elapsed / lookups);
+        }
+    }
+
+    /**
+     * Heap usage and GC time of a tree with -Dnodes=N nodes (default 10M) in InodeFS, on and off the heap, compared with the
+     * same tree built from File and Directory objects in HackerFS (-Dobjects=false skips that part).
+     * Directories hold 1000 entries each.
+     */
+    private static void inode() {
+        int nodes = Integer.getInteger("nodes", 10_000_000);
+        print("%-10s %12s %12s %14s", "engine", "nodes", "heap MB", "gc ms (build)");
+
+        for (boolean offHeap : new boolean[]{false, true}) {
+            long before = usedHeap();
+            long gcBefore = gcMillis();
+            InodeFS inodes = new InodeFS(nodes + 1, offHeap);
+            try {
+                for (int created = 0; created < nodes; ) {
+                    String dir = "dir-" + created;
+                    inodes.createDirectory(dir);
+                    inodes.enterDirectory(dir);
+                    created++;
+                    for (int i = 0; i < 999 && created < nodes; i++, created++) inodes.createEmptyFile("file-" + i + ".txt");
+                    inodes.leaveDirectory();
+                }
+            } catch (AlreadyExists | NoSuchFileOrDirectory e) {
+                throw new IllegalStateException(e);
+            }
+            long gc = gcMillis() - gcBefore;
+            long heap = usedHeap() - before;
+            print("%-10s %12d %12.1f %14d", offHeap ? "off-heap" : "InodeFS", inodes.getNodeCount() - 1, heap / 1e6, gc);
+        }
+
+        if (!Boolean.parseBoolean(System.getProperty("objects", "true"))) return;
+        long before = usedHeap();
+        long gcBefore = gcMillis();
+        HackerFS objects = new HackerFS();
+        try {
+            for (int created = 0; created < nodes; ) {
+                String dir = "dir-" + created;
+                objects.createDirectory(dir);
+                objects.enterDirectory(dir);
+                created++;
+                for (int i = 0; i < 999 && created < nodes; i++, created++) objects.createEmptyFile("file-" + i + ".txt");
+                objects.leaveDirectory();
+            }
+        } catch (AlreadyExists | NoSuchFileOrDirectory e) {
+            throw new IllegalStateException(e);
+        }
+        long gc = gcMillis() - gcBefore;
+        long heap = usedHeap() - before;
+        print("%-10s %12d %12.1f %14d", "HackerFS", objects.getWorkingDirectory().equals("/") ? nodes : 0, heap / 1e6, gc);
+    }
+
+    /**
+     * Traversals of a chain of -Ddepth=N nested directories (default 100k) with a file at the bottom.
+     * Without the iterative TreeWalker these operations fail with a StackOverflowError at this depth.
+     */
+    private static void walker() {
+        int depth = Integer.getInteger("depth", 100_000);
+        Directory top = new Directory("", null);
+        Directory dir = top;
+        try {
+            for (int i = 0; i < depth; i++) {
+                Directory next = new Directory("d", dir);
+                dir.addEntry(next);
+                dir = next;
+            }
+            dir.addEntry(new File("leaf", dir));
+        } catch (AlreadyExists e) {
+            throw new IllegalStateException(e);
+        }
+        Directory bottom = dir;
+        print("%-24s %10s %12s", "operation (depth " + depth + ")", "ms", "result");
+        time("list", () -> top.list().length());
+        time("listLong", () -> top.listLong().length());
+        time("find(\"leaf\")", () -> top.find("leaf").length());
+        time("getPath (bottom)", () -> bottom.getPath().length());
+        time("walk().count()", () -> top.walk().count());
+        time("post-order depth sum", () -> {
+            long[] sum = {0};
+            try {
+                new TreeWalker().walk(top, new TreeWalker.Visitor() {
+                    @Override
+                    public boolean visit(FSObject elt, int d) {
+                        return true;
+                    }
+
+                    @Override
+                    public void leave(FSObject elt, int d) {
+                        sum[0] += d;
+                    }
+                });
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return sum[0];
+        });
+        time("maxDepth 10", () -> new TreeWalker(10).stream(top).count());
+    }
+
+    /**
+     * find(String) against findParallel(String) with 1 to 16 worker threads, on a wide tree of
+     * 64 directories with 20k files each.
+     */
+    private static void parallelFind() {
+        Directory top = new Directory("", null);
+        try {
+            for (int d = 0; d < 64; d++) {
+                Directory dir = new Directory("dir-" + d, top);
+                top.addEntry(dir);
+                for (int f = 0; f < 20_000; f++) dir.addEntry(new File("file-" + f + ".log", dir));
+            }
+        } catch (AlreadyExists e) {
+            throw new IllegalStateException(e);
+        }
+        String expected = top.find("7");
+        for (int i = 0; i < 3; i++) top.find("7"); // warm-up
+        long start = System.nanoTime();
+        top.find("7");
+        double sequential = (System.nanoTime() - start) / 1e6;
+        print("%-12s %10s %10s   (%d cores available)", "threads", "ms", "speedup", Runtime.getRuntime().availableProcessors());
+        print("%-12s %10.1f %10.2f", "sequential", sequential, 1.0);
+        for (int threads = 1; threads <= 16; threads *= 2) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            for (int i = 0; i < 3; i++) top.findParallel("7", pool); // warm-up
+            start = System.nanoTime();
+            String result = top.findParallel("7", pool);
+            double elapsed = (System.nanoTime() - start) / 1e6;
+            pool.shutdown();
+            if (!result.equals(expected)) throw new IllegalStateException("parallel find differs");
+            print("%-12d %10.1f %10.2f", threads, elapsed, sequential / elapsed);
+        }
+    }
+
+    /**
+     * find(String) with and without a name index, on -Dnodes=N files (default 2M) in directories of 1000.
+     */
+    private static void trigram() {
+        int nodes = Integer.getInteger("nodes", 2_000_000);
+        HackerFS fs = new HackerFS();
+        try {
+            for (int created = 0; created < nodes; created += 1000) {
+                fs.createDirectory("dir-" + created);
+                fs.enterDirectory("dir-" + created);
+                for (int i = 0; i < 1000; i++) fs.createEmptyFile("file-" + (created + i) + ".log");
+                fs.leaveDirectory();
+            }
+        } catch (AlreadyExists | NoSuchFileOrDirectory e) {
+            throw new IllegalStateException(e);
+        }
+        String term = "-" + (nodes / 2) + ".";
+        print("%-24s %10s %12s", "mode", "ms", "matches");
+        time("walk", () -> fs.find(term).split("\n").length);
+        time("build index", () -> {
+            fs.enableNameIndex();
+            return 0;
+        });
+        time("index", () -> fs.find(term).split("\n").length);
+        time("index (hot)", () -> fs.find(term).split("\n").length);
+    }
+
+    /**
+     * Importing -Dnodes=N files with content (default 1M) into one directory, one by one and as a batch.
+     */
+    private static void bulk() {
+        int nodes = Integer.getInteger("nodes", 1_000_000);
+        print("%-24s %10s %12s", "mode", "ms", "files");
+        time("createEmptyFile+write", () -> {
+            HackerFS fs = new HackerFS();
+            try {
+                for (int i = 0; i < nodes; i++) {
+                    fs.createEmptyFile("file-" + i + ".txt");
+                    fs.writeFile("file-" + i + ".txt", "content");
+                }
+            } catch (AlreadyExists | NoSuchFileOrDirectory e) {
+                throw new IllegalStateException(e);
+            }
+            return fs.walk().count();
+        });
+        time("createEntries", () -> {
+            HackerFS fs = new HackerFS();
+            List<NewEntry> entries = new ArrayList<>(nodes);
+            for (int i = 0; i < nodes; i++) entries.add(NewEntry.file("file-" + i + ".txt", "content"));
+            try {
+                fs.createEntries(entries);
+            } catch (AlreadyExists e) {
+                throw new IllegalStateException(e);
+            }
+            return fs.walk().count();
+        });
+    }
+
+    /**
+     * Snapshots of a PersistentFS with -Dnodes=N files (default 1M) in directories of 1000, against a
+     * recursive copy of the same tree in HackerFS.
+     */
+    private static void snapshot() {
+        int nodes = Integer.getInteger("nodes", 1_000_000);
+        PersistentFS persistent = new PersistentFS();
+        HackerFS objects = new HackerFS();
+        try {
+            for (int created = 0; created < nodes; created += 1000) {
+                persistent.createDirectory("dir-" + created);
+                persistent.enterDirectory("dir-" + created);
+                objects.createDirectory("dir-" + created);
+                objects.enterDirectory("dir-" + created);
+                for (int i = 0; i < 1000; i++) {
+                    persistent.createEmptyFile("file-" + i + ".txt");
+                    objects.createEmptyFile("file-" + i + ".txt");
+                }
+                persistent.leaveDirectory();
+                objects.leaveDirectory();
+            }
+            objects.createDirectory("all");
+        } catch (AlreadyExists | NoSuchFileOrDirectory e) {
+            throw new IllegalStateException(e);
+        }
+        print("%-24s %10s %12s", "operation", "ms", "result");
+        PersistentFS[] snapshot = new PersistentFS[1];
+        time("PersistentFS.snapshot", () -> {
+            snapshot[0] = persistent.snapshot();
+            return 1;
+        });
+        time("write after snapshot", () -> {
+            try {
+                persistent.enterDirectory("dir-0");
+                persistent.writeFile("file-0.txt", "changed");
+                snapshot[0].enterDirectory("dir-0");
+                if (snapshot[0].readFile("file-0.txt") != null) throw new IllegalStateException("snapshot changed");
+                return 1;
+            } catch (NoSuchFileOrDirectory e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        time("HackerFS cp -r", () -> {
+            try {
+                for (int created = 0; created < nodes; created += 1000) objects.copy("/dir-" + created, "/all");
+            } catch (AlreadyExists | NoSuchFileOrDirectory e) {
+                throw new IllegalStateException(e);
+            }
+            return objects.walk().count();
+        });
+    }
+
+    /**
+     * Lookups per second in one directory of 100k files with 1 to 16 reader threads, while one writer
+     * keeps adding and removing files in the same directory.
+     */
+    private static void concurrent() {
+        Directory top = new Directory("", null);
+        Directory dir = new Directory("spool", top);
+        try {
+            top.addEntry(dir);
+            for (int i = 0; i < 100_000; i++) dir.addEntry(new File("file-" + i, dir));
+        } catch (AlreadyExists e) {
+            throw new IllegalStateException(e);
+        }
+        print("%-12s %14s   (%d cores available)", "readers", "lookups/s", Runtime.getRuntime().availableProcessors());
+        for (int readers = 1; readers <= 16; readers *= 2) {
+            AtomicBoolean running = new AtomicBoolean(true);
+            LongAdder lookups = new LongAdder();
+            List<Thread> threads = new ArrayList<>();
+            threads.add(new Thread(() -> {
+                for (int i = 0; running.get(); i++) {
+                    File f = new File("new-" + i, dir);
+                    try {
+                        dir.addEntry(f);
+                    } catch (AlreadyExists e) {
+                        throw new IllegalStateException(e);
+                    }
+                    f.remove();
+                }
+            }));
+            for (int r = 0; r < readers; r++) {
+                int seed = r;
+                threads.add(new Thread(() -> {
+                    long count = 0;
+                    for (int i = seed; running.get(); i += 7, count++) dir.contains("file-" + (i % 100_000));
+                    lookups.add(count);
+                }));
+            }
+            threads.forEach(Thread::start);
+            try {
+                Thread.sleep(1_000);
+                running.set(false);
+                for (Thread thread : threads) thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            print("%-12d %14d", readers, lookups.sum());
+        }
+    }
+
+    /**
+     * Creates and removes per second in one directory with 1 to 16 threads that each create a file and remove
+     * it again, for a plain and for a concurrent directory.
+     */
+    private static void spool() {
+        print("%-12s %14s %14s   (%d cores available)", "creators", "plain/s", "concurrent/s",
+                Runtime.getRuntime().availableProcessors());
+        for (int creators = 1; creators <= 16; creators *= 2) {
+            print("%-12d %14d %14d", creators, spool(creators, false), spool(creators, true));
+        }
+    }
+
+    private static long spool(int creators, boolean concurrent) {
+        Directory top = new Directory("", null);
+        Directory dir = new Directory("spool", top, concurrent);
+        try {
+            top.addEntry(dir);
+        } catch (AlreadyExists e) {
+            throw new IllegalStateException(e);
+        }
+        AtomicBoolean running = new AtomicBoolean(true);
+        LongAdder operations = new LongAdder();
+        List<Thread> threads = new ArrayList<>();
+        for (int c = 0; c < creators; c++) {
+            int id = c;
+            threads.add(new Thread(() -> {
+                long count = 0;
+                for (int i = 0; running.get(); i++, count++) {
+                    File f = new File("job-" + id + "-" + i, dir);
+                    try {
+                        dir.addEntry(f);
+                    } catch (AlreadyExists e) {
+                        throw new IllegalStateException(e);
+                    }
+                    f.remove();
+                }
+                operations.add(count);
+            }));
+        }
+        threads.forEach(Thread::start);
+        try {
+            Thread.sleep(1_000);
+            running.set(false);
+            for (Thread thread : threads) thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return operations.sum();
+    }
+
+    /**
+     * Operations per second of -Dsessions=N sessions (default 1000) on one HackerFS, each on its own thread.
+     * Every session creates its own directory, then keeps creating, reading and removing files in it and
+     * listing the directory of a neighbouring session by a relative path.
+     */
+    private static void sessions() {
+        int sessions = Integer.getInteger("sessions", 1_000);
+        HackerFS fs = new HackerFS();
+        AtomicBoolean running = new AtomicBoolean(true);
+        LongAdder operations = new LongAdder();
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> threads = new ArrayList<>();
+        for (int s = 0; s < sessions; s++) {
+            String name = "s" + s, neighbour = "../s" + (s + 1) % sessions;
+            Thread thread = new Thread(() -> {
+                Session session = fs.openSession();
+                long count = 0;
+                try {
+                    session.createDirectory(name);
+                    session.enterDirectory(name);
+                    for (int i = 0; running.get(); i++, count += 4) {
+                        session.createEmptyFile("f" + i);
+                        session.readFile("f" + i);
+                        session.remove("f" + i);
+                        try {
+                            session.diskUsage(neighbour);
+                        } catch (NoSuchFileOrDirectory ignored) {
+                            // not created yet
+                        }
+                    }
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+                operations.add(count);
+            });
+            thread.setDaemon(true);
+            threads.add(thread);
+        }
+        threads.forEach(Thread::start);
+        try {
+            Thread.sleep(2_000);
+            running.set(false);
+            for (Thread thread : threads) thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (!failures.isEmpty()) throw new IllegalStateException(failures.get(0));
+        print("%-12s %14s   (%d cores available)", "sessions", "operations/s", Runtime.getRuntime().availableProcessors());
+        print("%-12d %14d", sessions, operations.sum() / 2);
+    }
+
+    /**
+     * 64 concurrent find requests on a tree with -Dnodes=N nodes (default 100k) through AsyncHackerFS, which runs
+     * one find for all of them, compared with running every request on the same executor.
+     */
+    private static void async() {
+        int nodes = Integer.getInteger("nodes", 100_000), requests = 64;
+        HackerFS fs = new HackerFS();
+        try {
+            for (int created = 0; created < nodes; created += 1000) {
+                fs.createDirectory("dir-" + created);
+                fs.enterDirectory("dir-" + created);
+                for (int i = 0; i < 1000; i++) fs.createEmptyFile("file-" + i + ".txt");
+                fs.leaveDirectory();
+            }
+        } catch (AlreadyExists | NoSuchFileOrDirectory e) {
+            throw new IllegalStateException(e);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        AsyncHackerFS async = new AsyncHackerFS(fs, executor);
+        print("%-24s %10s %12s", "operation (" + requests + "x)", "ms", "result");
+        time("find, coalesced", () -> {
+            List<CompletableFuture<String>> finds = new ArrayList<>();
+            for (int i = 0; i < requests; i++) finds.add(async.find("file-999"));
+            return finds.stream().mapToLong(f -> f.join().length()).sum();
+        });
+        time("find, one per request", () -> {
+            List<CompletableFuture<String>> finds = new ArrayList<>();
+            for (int i = 0; i < requests; i++) finds.add(CompletableFuture.supplyAsync(() -> fs.find("file-999"), executor));
+            return finds.stream().mapToLong(f -> f.join().length()).sum();
+        });
+        executor.shutdown();
+    }
+
+    /**
+     * Heap per file of 100k files with 1 KB of mostly ASCII content, stored as UTF-8 bytes by File, compared with
+     * keeping the same content as Strings. One character outside Latin-1 makes a String use two bytes per char.
+     */
+    private static void content() {
+        int files = 100_000;
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 1000) text.append("plain ascii text, ");
+        text.append("\u2713");
+        String template = text.toString();
+        print("%-24s %14s", "content (1 KB)", "bytes/file");
+
+        long before = usedHeap();
+        String[] strings = new String[files];
+        for (int i = 0; i < files; i++) strings[i] = i + template;
+        print("%-24s %14.1f", "String", (double) (usedHeap() - before) / files);
+
+        before = usedHeap();
+        File[] stored = new File[files];
+        for (int i = 0; i < files; i++) {
+            stored[i] = new File("f" + i, null);
+            stored[i].setContent(strings[i]);
+        }
+        long bytes = usedHeap() - before;
+        if (stored[files - 1].getSize() != strings[files - 1].getBytes(StandardCharsets.UTF_8).length) {
+            throw new IllegalStateException("size is not in bytes");
+        }
+        print("%-24s %14.1f", "File (UTF-8 bytes)", (double) bytes / files);
+    }
+
+    private static void time(String operation, LongSupplier body) {
+        long start = System.nanoTime();
+        long result = body.getAsLong();
+        print("%-24s %10.1f %12d", operation, (System.nanoTime() - start) / 1e6, result);
+    }
+}
@@ -0,0 +1,13 @@
+/**
+ * A memoized String together with the generation it was computed in.
+ * Immutable, so a node can swap a cached value with a single reference write.
+ */
+final class CachedString {
+    final String value;
+    final long generation;
+
+    CachedString(String value, long generation) {
+        this.value = value;
+        this.generation = generation;
+    }
+}
@@ -0,0 +1,242 @@
+import java.util.*;
+
+/**
+ * The entries of a directory, looked up by name.
+ * <p>
+ * Small directories keep their entries in an inline array which is scanned on lookup. Once a directory
+ * grows beyond INLINE_CAPACITY entries the table switches to a hashed layout, and it switches back when
+ * it shrinks to half of that again. Both layouts keep insertion order.
+ * <p>
+ * Optionally the table also keeps its entries in a TreeMap ordered by name. Then iteration is in name order
+ * and entries with a common prefix can be found without a scan.
+ * <p>
+ * Not thread-safe; Directory guards it with its lock. See ConcurrentChildTable for directories that many threads
+ * change at once.
+ */
+class ChildTable extends AbstractCollection<FSObject> {
+    static final int INLINE_CAPACITY = 8;
+    private static final FSObject[] EMPTY = new FSObject[0];
+
+    private FSObject[] inline = EMPTY;
+    private int size;
+    private Map<String, FSObject> hashed; // null while the table is small
+    private TreeMap<String, FSObject> sorted; // null unless enabled
+
+    /**
+     * @param name of the entry
+     * @return the entry with that name or null
+     */
+    FSObject get(String name) {
+        if (this.hashed != null) return this.hashed.get(name);
+        for (int i = 0; i < this.size; i++) {
+            if (this.inline[i].getName().equals(name)) return this.inline[i];
+        }
+        return null;
+    }
+
+    /**
+     * Like get, but may run while the table is changed, under an optimistic read that the caller validates
+     * afterwards. Only the inline layout is read: its scan is bounded by the array it started with and skips
+     * cleared slots, so a concurrent change can only make it return a wrong result. The hashed and sorted
+     * layouts may loop or fail when read during a change (e.g. while a tree bin is rebalanced).
+     *
+     * @param name of the entry
+     * @return the entry with that name or null, valid only if no change overlapped; null for the hashed layout
+     */
+    FSObject getOptimistic(String name) {
+        FSObject[] inline = this.inline;
+        int size = Math.min(this.size, inline.length);
+        for (int i = 0; i < size; i++) {
+            FSObject e = inline[i];
+            if (e != null && name.equals(e.getName())) return e;
+        }
+        return null;
+    }
+
+    /**
+     * @return true while the entries are kept in the inline layout, see getOptimistic
+     */
+    boolean isInline() {
+        return this.hashed == null;
+    }
+
+    /**
+     * Adds an entry unless an entry with the same name exists.
+     *
+     * @param e the entry to add
+     * @return the existing entry with the same name, or null if e was added
+     */
+    FSObject putIfAbsent(FSObject e) {
+        FSObject existing = get(e.getName());
+        if (existing != null) return existing;
+        if (this.sorted != null) this.sorted.put(e.getName(), e);
+        if (this.hashed != null) {
+            this.hashed.put(e.getName(), e);
+            return null;
+        }
+        if (this.size == INLINE_CAPACITY) {
+            toHashed(INLINE_CAPACITY + 1);
+            this.hashed.put(e.getName(), e);
+            return null;
+        }
+        if (this.size == this.inline.length) {
+            this.inline = Arrays.copyOf(this.inline, Math.max(2, this.size * 2));
+        }
+        this.inline[this.size++] = e;
+        return null;
+    }
+
+    /**
+     * Prepares the table for expectedSize entries, so that adding them does not grow it step by step.
+     *
+     * @param expectedSize number of entries the table will hold
+     */
+    void ensureCapacity(int expectedSize) {
+        if (expectedSize <= INLINE_CAPACITY) {
+            if (this.hashed == null && expectedSize > this.inline.length) this.inline = Arrays.copyOf(this.inline, expectedSize);
+            return;
+        }
+        if (this.hashed == null) {
+            toHashed(expectedSize);
+        } else if (expectedSize > this.hashed.size() * 2) {
+            Map<String, FSObject> hashed = new LinkedHashMap<>(expectedSize * 4 / 3 + 1);
+            hashed.putAll(this.hashed);
+            this.hashed = hashed;
+        }
+    }
+
+    /**
+     * Removes an entry. Does nothing if e is not an entry of this table.
+     *
+     * @param e the entry to remove
+     * @return true if e was removed
+     */
+    boolean removeEntry(FSObject e) {
+        if (this.sorted != null) this.sorted.remove(e.getName(), e);
+        if (this.hashed != null) {
+            if (!this.hashed.remove(e.getName(), e)) return false;
+            if (this.hashed.size() <= INLINE_CAPACITY / 2) toInline();
+            return true;
+        }
+        for (int i = 0; i < this.size; i++) {
+            if (this.inline[i] == e) {
+                System.arraycopy(this.inline, i + 1, this.inline, i, this.size - i - 1);
+                this.inline[--this.size] = null;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes all entries.
+     */
+    @Override
+    public void clear() {
+        this.inline = EMPTY;
+        this.size = 0;
+        this.hashed = null;
+        if (this.sorted != null) this.sorted.clear();
+    }
+
+    /**
+     * Re-keys an entry before its name changes. Does nothing if e is not an entry of this table.
+     *
+     * @param e       the entry that is renamed
+     * @param newName the new name of the entry
+     * @throws IllegalArgumentException if another entry with the new name already exists.
+     */
+    void rename(FSObject e, String newName) {
+        if (get(e.getName()) != e || e.getName().equals(newName)) return;
+        if (get(newName) != null) throw new IllegalArgumentException(newName + " already exists!");
+        if (this.sorted != null) {
+            this.sorted.remove(e.getName());
+            this.sorted.put(newName, e);
+        }
+        if (this.hashed != null) {
+            this.hashed.remove(e.getName());
+            this.hashed.put(newName, e);
+        }
+        // inline entries are matched by their current name, nothing to re-key
+    }
+
+    /**
+     * Keep the entries ordered by name from now on.
+     */
+    void enableSorted() {
+        if (this.sorted != null) return;
+        TreeMap<String, FSObject> sorted = new TreeMap<>();
+        for (FSObject e : this) sorted.put(e.getName(), e);
+        this.sorted = sorted;
+    }
+
+    /**
+     * @return a new array with the entries in iteration order. It is not kept, so a walk over a large tree
+     * does not leave a second copy of every directory's entries behind.
+     */
+    FSObject[] snapshot() {
+        return toArray(EMPTY);
+    }
+
+    /**
+     * @param prefix the names have to start with
+     * @return entries whose name starts with prefix, ordered by name. O(log n + k) if the table is sorted.
+     */
+    List<FSObject> withPrefix(String prefix) {
+        List<FSObject> found = new ArrayList<>();
+        if (this.sorted != null) {
+            for (Map.Entry<String, FSObject> entry : this.sorted.tailMap(prefix, true).entrySet()) {
+                if (!entry.getKey().startsWith(prefix)) break;
+                found.add(entry.getValue());
+            }
+            return found;
+        }
+        for (FSObject e : this) {
+            if (e.getName().startsWith(prefix)) found.add(e);
+        }
+        found.sort(Comparator.comparing(FSObject::getName));
+        return found;
+    }
+
+    private void toHashed(int expectedSize) {
+        this.hashed = new LinkedHashMap<>(expectedSize * 4 / 3 + 1);
+        for (int i = 0; i < this.size; i++) {
+            this.hashed.put(this.inline[i].getName(), this.inline[i]);
+        }
+        this.inline = EMPTY;
+        this.size = 0;
+    }
+
+    private void toInline() {
+        this.inline = this.hashed.values().toArray(new FSObject[INLINE_CAPACITY]);
+        this.size = this.hashed.size();
+        this.hashed = null;
+    }
+
+    // also read optimistically by Directory.isEmpty, so hashed is read once
+    @Override
+    public int size() {
+        Map<String, FSObject> hashed = this.hashed;
+        return hashed != null ? hashed.size() : this.size;
+    }
+
+    @Override
+    public Iterator<FSObject> iterator() {
+        if (this.sorted != null) return Collections.unmodifiableCollection(this.sorted.values()).iterator();
+        if (this.hashed != null) return Collections.unmodifiableCollection(this.hashed.values()).iterator();
+        return new Iterator<>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return this.next < ChildTable.this.size;
+            }
+
+            @Override
+            public FSObject next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                return ChildTable.this.inline[this.next++];
+            }
+        };
+    }
+}
@@ -0,0 +1,92 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * The entries of a directory that many threads add to and remove from at the same time, e.g. a spool directory.
+ * The entries are kept in a ConcurrentHashMap, so single entries are added, removed and looked up without
+ * locking, and iteration never fails because of a concurrent change. With a sorted index the entries are kept
+ * in a ConcurrentSkipListMap instead.
+ * <p>
+ * rename and enableSorted consist of several steps and must not overlap with other changes; Directory calls
+ * them while it holds its lock exclusively.
+ */
+class ConcurrentChildTable extends ChildTable {
+    private volatile ConcurrentMap<String, FSObject> entries = new ConcurrentHashMap<>();
+
+    @Override
+    FSObject get(String name) {
+        return this.entries.get(name);
+    }
+
+    @Override
+    FSObject getOptimistic(String name) {
+        return this.entries.get(name);
+    }
+
+    @Override
+    boolean isInline() {
+        return false;
+    }
+
+    @Override
+    FSObject putIfAbsent(FSObject e) {
+        return this.entries.putIfAbsent(e.getName(), e);
+    }
+
+    @Override
+    void ensureCapacity(int expectedSize) {
+        // grows concurrently, nothing to prepare
+    }
+
+    @Override
+    boolean removeEntry(FSObject e) {
+        return this.entries.remove(e.getName(), e);
+    }
+
+    @Override
+    public void clear() {
+        this.entries.clear();
+    }
+
+    @Override
+    void rename(FSObject e, String newName) {
+        if (this.entries.get(e.getName()) != e || e.getName().equals(newName)) return;
+        if (this.entries.putIfAbsent(newName, e) != null) throw new IllegalArgumentException(newName + " already exists!");
+        this.entries.remove(e.getName(), e);
+    }
+
+    @Override
+    void enableSorted() {
+        if (this.entries instanceof ConcurrentSkipListMap) return;
+        this.entries = new ConcurrentSkipListMap<>(this.entries);
+    }
+
+    @Override
+    List<FSObject> withPrefix(String prefix) {
+        List<FSObject> found = new ArrayList<>();
+        if (this.entries instanceof ConcurrentSkipListMap) {
+            for (Map.Entry<String, FSObject> entry : ((ConcurrentSkipListMap<String, FSObject>) this.entries).tailMap(prefix, true).entrySet()) {
+                if (!entry.getKey().startsWith(prefix)) break;
+                found.add(entry.getValue());
+            }
+            return found;
+        }
+        for (Map.Entry<String, FSObject> entry : this.entries.entrySet()) {
+            if (entry.getKey().startsWith(prefix)) found.add(entry.getValue());
+        }
+        found.sort(Comparator.comparing(FSObject::getName));
+        return found;
+    }
+
+    @Override
+    public int size() {
+        return this.entries.size();
+    }
+
+    @Override
+    public Iterator<FSObject> iterator() {
+        return Collections.unmodifiableCollection(this.entries.values()).iterator();
+    }
+}
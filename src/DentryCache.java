@@ -0,0 +1,68 @@
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * The directories HackerFS resolved recently, keyed by their path (with trailing "/").
+ * Lookups and inserts go to a ConcurrentHashMap, so sessions resolving paths do not wait for each other.
+ * Eviction is approximately least recently used: an insert into a full cache looks at a few entries and
+ * drops the one that was used longest ago.
+ */
+class DentryCache {
+    private static final int SAMPLES = 8;
+
+    private final int capacity;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private static final class Entry {
+        final Directory directory;
+        volatile long lastUsed = System.nanoTime();
+
+        Entry(Directory directory) {
+            this.directory = directory;
+        }
+    }
+
+    /**
+     * @param capacity number of directories above which inserts evict
+     */
+    DentryCache(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * @param path of the directory
+     * @return the cached directory or null
+     */
+    Directory get(String path) {
+        Entry entry = this.entries.get(path);
+        if (entry == null) return null;
+        entry.lastUsed = System.nanoTime();
+        return entry.directory;
+    }
+
+    void put(String path, Directory directory) {
+        this.entries.put(path, new Entry(directory));
+        if (this.entries.size() > this.capacity) evict();
+    }
+
+    // drops the cached directories whose path matches
+    void removeIf(Predicate<String> path) {
+        this.entries.keySet().removeIf(path);
+    }
+
+    int size() {
+        return this.entries.size();
+    }
+
+    // drops the least recently used of the first SAMPLES entries in table order, which is random with respect to use
+    private void evict() {
+        Map.Entry<String, Entry> oldest = null;
+        int sampled = 0;
+        for (Map.Entry<String, Entry> candidate : this.entries.entrySet()) {
+            if (oldest == null || candidate.getValue().lastUsed < oldest.getValue().lastUsed) oldest = candidate;
+            if (++sampled == SAMPLES) break;
+        }
+        if (oldest != null) this.entries.remove(oldest.getKey(), oldest.getValue());
+    }
+}
@@ -1,9 +1,84 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.StampedLock;
+import java.util.stream.Stream;
 
+/**
+ * A directory of HackerFS. Directories can be used from several threads at once: every directory guards its
+ * entries with its own StampedLock, listings and walks copy the entries under the read lock and work on the copy,
+ * and the aggregates are exact whenever no change is in progress.
+ * <p>
+ * Every change of an entry's membership, name or size (addEntry, removeEntry, move, setName, File.setContent)
+ * holds the monitor of that entry from the change of the table to the end of the bookkeeping, so two changes of
+ * the same entry update the name index and the aggregates in the order they changed the table. Each directory
+ * records what the aggregates of its parent count for it (and the parent does the same for each file), and every
+ * update applies the difference to what was counted; updates for different entries therefore commute. A change
+ * of the name index first checks, under the index's lock, that the entry still belongs to the indexed tree.
+ * <p>
+ * Lock order: the global rename lock, then the monitor of the changed entry, then the lock of a name index,
+ * then the aggregate lock of one directory at a time, then directory locks. Moves of directories between two
+ * parents take the rename lock, so that no other such move changes the ancestry they check. Operations that
+ * lock two directories take the locks in ascending id order. No lock is held while one earlier in this order
+ * is requested.
+ * <p>
+ * A concurrent directory keeps its entries in a ConcurrentChildTable. There, adding or removing a single entry
+ * takes the lock only in shared mode, and the name index only in shared mode too; operations that change several
+ * entries still take the lock exclusively. The aggregates are not updated by each change either: the change is
+ * recorded, and one thread at a time rolls the recorded changes up (see rollUp), while the other creators
+ * return without waiting. So the aggregates of a concurrent directory and its ancestors may lag behind its
+ * entries until that roll-up ends.
+ */
 public class Directory implements FSObject {
-    private String name;
-    private FSObject parent;
-    private final List<FSObject> contents = new ArrayList<>();
+    private static final int NEGATIVE_CACHE_SIZE = 256;
+    private static final Object RENAME_LOCK = new Object();
+    private static final AtomicLong NEXT_ID = new AtomicLong();
+    private static final AtomicLongFieldUpdater<Directory> GENERATION = AtomicLongFieldUpdater.newUpdater(Directory.class, "generation");
+    private static final AtomicLongFieldUpdater<Directory> NEGATIVE_HITS = AtomicLongFieldUpdater.newUpdater(Directory.class, "negativeHits");
+    private static final AtomicReferenceFieldUpdater<Directory, Directory> COUNTED_IN = AtomicReferenceFieldUpdater.newUpdater(Directory.class, Directory.class, "countedIn");
+    private static final AtomicReferenceFieldUpdater<File, Directory> FILE_COUNTED_IN = AtomicReferenceFieldUpdater.newUpdater(File.class, Directory.class, "countedIn");
+    private static final AtomicIntegerFieldUpdater<Directory> ROLLING_UP = AtomicIntegerFieldUpdater.newUpdater(Directory.class, "rollingUp");
+
+    private final long id = NEXT_ID.getAndIncrement(); // defines the lock order
+    private final StampedLock lock = new StampedLock(); // guards contents
+    private volatile String name;
+    private volatile FSObject parent;
+    private final ChildTable contents;
+    private final boolean concurrent;
+    private volatile String removedPath; // the path this directory had when remove or removeRecursive detached it
+    private volatile boolean released; // emptied by release, set under the lock
+    private volatile PathGeneration paths; // shared by all directories of a tree
+    private CachedString cachedPath;
+    private volatile Set<String> misses; // names recently looked up without success, created on the first miss
+    private volatile long negativeHits;
+    private volatile NameIndex nameIndex; // shared by all directories of an indexed tree, null if not indexed
+    // aggregates over everything below this directory, kept up to date by addEntry, removeEntry and File.setContent
+    private final Object aggregateLock = new Object(); // guards the changes of the aggregates
+    private volatile long totalSize;
+    private volatile long fileCount;
+    private volatile long directoryCount;
+    private volatile long maxFileSize;
+    private int maxCount; // how many entries are counted with maxFileSize
+    private final Queue<FSObject> unsettled; // concurrent directories only: changed entries not yet counted, see rollUp
+    private volatile int rollingUp; // 1 while a thread settles the unsettled entries
+    // what the aggregates of the parent count for this directory, guarded by the parent's aggregateLock
+    private volatile Directory countedIn; // null while not counted, set from null with a CAS (see claim)
+    private long countedSize;
+    private long countedFiles;
+    private long countedDirectories;
+    private long countedMax;
+    // bumped on every change below this directory, for the listing caches
+    private volatile long generation;
+    private CachedString cachedList;
+    private CachedString cachedListLong;
 
     /**
      * The constructor
@@ -12,12 +87,88 @@ public class Directory implements FSObject {
      * @param parent Parent FSObject of the directory
      */
     public Directory(String name, FSObject parent) {
+        this(name, parent, false);
+    }
+
+    /**
+     * The constructor
+     *
+     * @param name       Name of the directory
+     * @param parent     Parent FSObject of the directory
+     * @param concurrent true for a directory that many threads add entries to and remove entries from at once
+     */
+    public Directory(String name, FSObject parent, boolean concurrent) {
         this.name = name;
         this.parent = parent;
+        this.concurrent = concurrent;
+        this.contents = concurrent ? new ConcurrentChildTable() : new ChildTable();
+        this.unsettled = concurrent ? new ConcurrentLinkedQueue<>() : null;
+        this.paths = parent instanceof Directory ? ((Directory) parent).paths : new PathGeneration();
     }
 
-    public List<FSObject> getContents() {
-        return contents;
+    /**
+     * The generation of the cached paths of one tree, bumped whenever a directory of the tree is renamed or moved.
+     * Values are drawn from one global counter, so a path cached in one tree never matches the generation of another.
+     */
+    private static final class PathGeneration {
+        private static final AtomicLong NEXT = new AtomicLong();
+
+        volatile long value = NEXT.incrementAndGet();
+
+        void invalidate() {
+            this.value = NEXT.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return true if single entries are added and removed without excluding each other, see the constructor
+     */
+    public boolean isConcurrent() {
+        return this.concurrent;
+    }
+
+    // locks for adding or removing a single entry: exclusively, or shared if the table is concurrent
+    private long lockForEntry() {
+        return this.concurrent ? this.lock.readLock() : this.lock.writeLock();
+    }
+
+    /**
+     * @return read-only copy of the directory's entries, taken at one point in time. Use addEntry/removeEntry to modify them.
+     */
+    public Collection<FSObject> getContents() {
+        return Collections.unmodifiableList(Arrays.asList(entries()));
+    }
+
+    // a copy of the entries, taken under the read lock
+    private FSObject[] entries() {
+        long stamp = this.lock.readLock();
+        try {
+            return this.contents.snapshot();
+        } finally {
+            this.lock.unlockRead(stamp);
+        }
+    }
+
+    // the entry with that name or null. A concurrent table can be read without the lock, a small one
+    // optimistically; see ChildTable.getOptimistic for why large ones are read under the read lock.
+    private FSObject get(String name) {
+        if (this.concurrent) return this.contents.get(name);
+        long stamp = this.lock.tryOptimisticRead();
+        if (stamp != 0 && this.contents.isInline()) {
+            FSObject elt = this.contents.getOptimistic(name);
+            if (this.lock.validate(stamp)) return elt;
+        }
+        stamp = this.lock.readLock();
+        try {
+            return this.contents.get(name);
+        } finally {
+            this.lock.unlockRead(stamp);
+        }
+    }
+
+    private Directory parentDirectory() {
+        FSObject parent = this.parent;
+        return parent instanceof Directory ? (Directory) parent : null;
     }
 
     // name getter
@@ -29,8 +180,11 @@ public class Directory implements FSObject {
     // name setter
     @Override
     public void setName(String name) {
-
+        HackerFS.checkName(name);
+        Directory parent = parentDirectory();
+        if (parent != null && parent.renameEntry(this, name)) return;
         this.name = name;
+        this.paths.invalidate();
     }
 
     // parent getter
@@ -43,6 +197,25 @@ public class Directory implements FSObject {
     @Override
     public void setParent(FSObject parent) {
         this.parent = parent;
+        if (parent instanceof Directory) adopt(((Directory) parent).paths);
+        this.paths.invalidate();
+    }
+
+    /**
+     * @return the current path generation of this directory's tree. Cached paths computed in another generation are stale.
+     */
+    long getPathGeneration() {
+        return this.paths.value;
+    }
+
+    // moves this subtree, e.g. one that was built detached, to the path generation of the tree it joins
+    private void adopt(PathGeneration paths) {
+        if (this.paths == paths) return;
+        this.paths = paths;
+        for (Iterator<FSObject> it = new TreeWalker().iterator(this); it.hasNext(); ) {
+            FSObject elt = it.next();
+            if (elt instanceof Directory) ((Directory) elt).paths = paths;
+        }
     }
 
     /**
@@ -50,29 +223,186 @@ public class Directory implements FSObject {
      * E.g. for a directory "d2" inside a directory "d1" which in turn is contained in the root folder,
      * one would get "/d1/d2/"
      *
+     * The path is cached until a directory of the same tree is renamed or moved. It is built by walking up to the
+     * nearest ancestor with a cached path, without recursion. Removed directories keep the path they had.
+     *
      * @return full path of the directory.
      */
     @Override
     public String getPath() {
-        String path = "/";
-        if (parent != null) path = this.parent.getPath() + this.name + "/";
-        return path;
+        long generation = this.paths.value;
+        CachedString cached = this.cachedPath;
+        if (cached != null && cached.generation == generation) return cached.value;
+        Deque<String> names = new ArrayDeque<>();
+        String prefix = "/";
+        for (Directory d = this; ; ) {
+            FSObject parent = d.parent;
+            if (parent == null) {
+                String removedPath = d.removedPath;
+                if (removedPath != null) prefix = removedPath;
+                break;
+            }
+            names.push(d.name);
+            if (!(parent instanceof Directory)) {
+                prefix = parent.getPath();
+                break;
+            }
+            d = (Directory) parent;
+            CachedString ancestor = d.cachedPath;
+            if (ancestor != null && ancestor.generation == generation) {
+                prefix = ancestor.value;
+                break;
+            }
+        }
+        StringBuilder path = new StringBuilder(prefix);
+        for (String n : names) path.append(n).append('/');
+        this.cachedPath = new CachedString(path.toString(), generation);
+        return this.cachedPath.value;
     }
 
     /**
      * Removes the directory if it is empty.
      * If it has a parent directory, make sure to remove it from the directory's content list.
+     * Afterwards the directory rejects new entries, see isRemoved().
      *
      * @throws NotEmpty if the directory is not empty.
      */
     @Override
     public void remove() throws NotEmpty {
-        if (!this.isEmpty()) throw new NotEmpty("Directory is not empty!");
+        synchronized (this) {
+            Directory parent = parentDirectory();
+            if (parent == null) {
+                if (!this.isEmpty()) throw new NotEmpty("Directory is not empty!");
+                return;
+            }
+            NameIndex nameIndex = parent.nameIndex;
+            String path = getPath();
+            // hold both locks, so that nothing is added between the check and the removal
+            Directory first = parent.id < this.id ? parent : this;
+            Directory second = first == parent ? this : parent;
+            long firstStamp = first.lock.writeLock();
+            long secondStamp = second.lock.writeLock();
+            boolean removed;
+            try {
+                if (!this.contents.isEmpty()) throw new NotEmpty("Directory is not empty!");
+                removed = parent.contents.removeEntry(this);
+                this.removedPath = path; // before the parent is dropped, see getPath
+            } finally {
+                second.lock.unlockWrite(secondStamp);
+                first.lock.unlockWrite(firstStamp);
+            }
+            if (removed) parent.removed(this, this.name, nameIndex);
+            this.parent = null;
+        }
+    }
 
-        else if (this.parent instanceof Directory) {
-            ((Directory) this.parent).removeEntry(this);
+    /**
+     * Removes the directory together with everything below it. The subtree is detached from its parent in O(1)
+     * (plus unindexing, if the tree has a name index), so it disappears from the file system immediately.
+     * Emptying the directories of the detached subtree, so that a stray reference to one of its nodes keeps
+     * only that node and its ancestors reachable, is left to reclaimer.
+     * <p>
+     * The removed directories stay usable like a deleted working directory: they keep their parents and paths,
+     * isRemoved() returns true, and adding or moving entries into them or out of them is rejected.
+     *
+     * @param reclaimer runs the release of the detached subtree, e.g. on a background thread
+     */
+    public void removeRecursive(Executor reclaimer) {
+        synchronized (this) {
+            this.removedPath = getPath(); // before the parent is dropped, see getPath
+            Directory parent = parentDirectory();
+            if (parent != null) parent.removeEntry(this);
+            this.parent = null;
         }
-        this.parent = null;
+        reclaimer.execute(this::release);
+    }
+
+    /**
+     * @return true if this directory was removed by remove() or removeRecursive(), or lies below one that was.
+     * Takes O(depth).
+     */
+    public boolean isRemoved() {
+        for (Directory d = this; d != null; d = d.parentDirectory()) {
+            if (d.removedPath != null) return true;
+        }
+        return false;
+    }
+
+    // true if entries must not be added to or moved out of this directory any more; called under the lock.
+    // Directories below a removed one are only rejected once release emptied them.
+    private boolean rejectsChanges() {
+        return this.removedPath != null || this.released;
+    }
+
+    // empties the directories of a detached subtree without recursion. Files keep their contents: a concurrent
+    // reader or writer may still hold one, and the contents become garbage with the file anyway.
+    private void release() {
+        Deque<Directory> directories = new ArrayDeque<>();
+        directories.push(this);
+        while (!directories.isEmpty()) {
+            Directory d = directories.pop();
+            FSObject[] entries;
+            long stamp = d.lock.writeLock();
+            try {
+                entries = d.contents.snapshot();
+                d.contents.clear();
+                d.released = true;
+            } finally {
+                d.lock.unlockWrite(stamp);
+            }
+            synchronized (d.aggregateLock) {
+                for (FSObject e : entries) {
+                    if (e instanceof Directory) ((Directory) e).countedIn = null;
+                    else if (e instanceof File) ((File) e).countedIn = null;
+                }
+                d.totalSize = d.fileCount = d.directoryCount = d.maxFileSize = 0;
+                d.maxCount = 0;
+            }
+            for (FSObject e : entries) {
+                if (e instanceof Directory) directories.push((Directory) e);
+            }
+            d.misses = null;
+            d.nameIndex = null;
+            d.cachedList = null;
+            d.cachedListLong = null;
+        }
+    }
+
+    /**
+     * Creates a copy of the directory with everything below it, without recursion. The copy is not added to
+     * parent; that is left to the caller. Files share their content with the originals (see File.copy), so
+     * this takes time and memory per file and directory, not per byte.
+     *
+     * @param name   of the copy
+     * @param parent of the copy
+     * @return the copy
+     */
+    public Directory copy(String name, FSObject parent) {
+        Directory top = new Directory(name, null, this.concurrent); // detached while filled, so the aggregates stay inside the copy
+        if (parent instanceof Directory) top.paths = ((Directory) parent).paths; // inherited by everything below
+        Deque<Directory[]> pending = new ArrayDeque<>(); // pairs of original and copy
+        pending.push(new Directory[]{this, top});
+        while (!pending.isEmpty()) {
+            Directory[] pair = pending.pop();
+            FSObject[] originals = pair[0].entries();
+            List<FSObject> entries = new ArrayList<>(originals.length);
+            for (FSObject e : originals) {
+                if (e instanceof Directory) {
+                    Directory d = new Directory(e.getName(), pair[1], ((Directory) e).concurrent);
+                    pending.push(new Directory[]{(Directory) e, d});
+                    entries.add(d);
+                } else if (e instanceof File) {
+                    entries.add(((File) e).copy(e.getName(), pair[1]));
+                }
+            }
+            try {
+                pair[1].addEntries(entries);
+            } catch (AlreadyExists e) {
+                throw new IllegalStateException(e); // names within one directory are unique
+            }
+        }
+        top.parent = parent;
+        return top;
     }
 
     /**
@@ -81,7 +411,16 @@ public class Directory implements FSObject {
      * @return true if the directory is empty.
      */
     public boolean isEmpty() {
-        return this.contents.isEmpty();
+        if (this.concurrent) return this.contents.size() == 0;
+        long stamp = this.lock.tryOptimisticRead();
+        boolean empty = this.contents.size() == 0;
+        if (this.lock.validate(stamp)) return empty;
+        stamp = this.lock.readLock();
+        try {
+            return this.contents.size() == 0;
+        } finally {
+            this.lock.unlockRead(stamp);
+        }
     }
 
     /**
@@ -89,13 +428,106 @@ public class Directory implements FSObject {
      * The parent attribute of the removed FSObject e is not modified here.
      *
      * @param e the element that should be added.
-     * @throws AlreadyExists if the directory contains already an FSObject with the same name.
+     * @throws AlreadyExists         if the directory contains already an FSObject with the same name.
+     * @throws IllegalStateException if the directory was removed, see removeRecursive
      */
     public void addEntry(FSObject e) throws AlreadyExists {
-        for (FSObject elt : this.contents) {
-            if (elt.getName().equals(e.getName())) throw new AlreadyExists(e.getPath() + " already exists!");
+        synchronized (e) {
+            long stamp = lockForEntry();
+            try {
+                if (rejectsChanges()) throw new IllegalStateException("Cannot add to a removed directory!");
+                if (this.contents.putIfAbsent(e) != null) throw new AlreadyExists(e.getPath() + " already exists!");
+                Set<String> misses = this.misses;
+                if (misses != null) misses.remove(e.getName());
+            } finally {
+                this.lock.unlock(stamp);
+            }
+            added(e);
+        }
+    }
+
+    // updates the name index and the aggregates after e was added, while holding the monitor of e
+    private void added(FSObject e) {
+        if (e instanceof Directory) ((Directory) e).adopt(this.paths);
+        index(e);
+        if (this.concurrent) {
+            settleLater(e);
+            return;
+        }
+        count(e);
+        propagate(this);
+    }
+
+    // updates the name index and the aggregates after e, which had that name, was removed, while holding the
+    // monitor of e. indexedBefore is the name index this directory had before the removal.
+    private void removed(FSObject e, String name, NameIndex indexedBefore) {
+        unindex(e, name, indexedBefore);
+        NameIndex nameIndex = this.nameIndex; // an index walk may have seen e meanwhile
+        if (nameIndex != indexedBefore) unindex(e, name, nameIndex);
+        if (this.concurrent) {
+            settleLater(e);
+            return;
         }
-        this.contents.add(e);
+        uncount(e);
+        propagate(this);
+    }
+
+    // updates the name index after e was renamed from oldName, while holding the monitor of e
+    private void renamed(FSObject e, String oldName, NameIndex indexedBefore) {
+        reindex(e, oldName, indexedBefore);
+        NameIndex nameIndex = this.nameIndex;
+        if (nameIndex != indexedBefore) reindex(e, oldName, nameIndex);
+        touch();
+        if (this.concurrent) settleLater(e); // a roll-up may have looked e up under its old name
+    }
+
+    /**
+     * Adds several FSObjects to the directory's contents at once. The contents are sized for all of them
+     * up front and the aggregates of the ancestors are updated once for the whole batch.
+     * Entries whose name already exists, in the directory or earlier in the batch, are skipped; all others are added.
+     * The parent attribute of the added FSObjects is not modified here.
+     *
+     * @param entries the elements that should be added.
+     * @throws AlreadyExists         after adding the other entries, if some names already existed. Every skipped
+     *                               entry is reported by its own suppressed AlreadyExists.
+     * @throws IllegalStateException if the directory was removed, see removeRecursive
+     */
+    public void addEntries(Collection<? extends FSObject> entries) throws AlreadyExists {
+        AlreadyExists clashes = null;
+        List<FSObject> added = new ArrayList<>(entries.size());
+        long stamp = lockForEntry(); // each entry is added atomically on its own
+        try {
+            if (rejectsChanges()) throw new IllegalStateException("Cannot add to a removed directory!");
+            this.contents.ensureCapacity(this.contents.size() + entries.size());
+            Set<String> misses = this.misses;
+            for (FSObject e : entries) {
+                if (this.contents.putIfAbsent(e) != null) {
+                    if (clashes == null) clashes = new AlreadyExists("Some entries already exist in " + getPath());
+                    clashes.addSuppressed(new AlreadyExists(e.getPath() + " already exists!"));
+                    continue;
+                }
+                if (misses != null) misses.remove(e.getName());
+                added.add(e);
+            }
+        } finally {
+            this.lock.unlock(stamp);
+        }
+        for (FSObject e : added) {
+            synchronized (e) {
+                if (get(e.getName()) != e) continue; // removed or moved away since, which did its own bookkeeping
+                if (e instanceof Directory) ((Directory) e).adopt(this.paths);
+                index(e);
+                if (this.concurrent) this.unsettled.add(e);
+                else count(e);
+            }
+        }
+        if (!added.isEmpty() && this.concurrent) {
+            touch(); // the entries may be counted by a roll-up of another thread, see settleLater
+            rollUp();
+        } else if (!added.isEmpty()) {
+            propagate(this);
+        }
+        if (clashes != null) throw clashes;
     }
 
     /**
@@ -105,7 +537,561 @@ public class Directory implements FSObject {
      * @param e the element that should be removed from the directory's content list.
      */
     public void removeEntry(FSObject e) {
-        this.contents.remove(e);
+        synchronized (e) {
+            NameIndex nameIndex = this.nameIndex;
+            long stamp = lockForEntry();
+            try {
+                if (!this.contents.removeEntry(e)) return;
+            } finally {
+                this.lock.unlock(stamp);
+            }
+            removed(e, e.getName(), nameIndex);
+        }
+    }
+
+    /**
+     * Moves e from one directory into another, or renames it within one directory. No lookup sees e in
+     * both places or in neither. Takes the locks of both directories, see the lock order above.
+     *
+     * @param e       the file or directory to move
+     * @param from    the directory that contains e
+     * @param to      the directory that will contain e
+     * @param newName the name of e in to
+     * @throws NoSuchFileOrDirectory    if e is not an entry of from (any more), or from or to was removed
+     * @throws AlreadyExists            if to already has another entry named newName
+     * @throws IllegalArgumentException if e is a directory and to is e or lies below it
+     */
+    static void move(FSObject e, Directory from, Directory to, String newName) throws NoSuchFileOrDirectory, AlreadyExists {
+        if (!(e instanceof Directory) || from == to) {
+            relink(e, from, to, newName);
+            return;
+        }
+        synchronized (RENAME_LOCK) {
+            if (to == e || ((Directory) e).isAncestorOf(to)) {
+                throw new IllegalArgumentException("Cannot move a directory into itself!");
+            }
+            relink(e, from, to, newName);
+        }
+    }
+
+    private static void relink(FSObject e, Directory from, Directory to, String newName) throws NoSuchFileOrDirectory, AlreadyExists {
+        synchronized (e) {
+            String oldName = e.getName();
+            NameIndex nameIndex = from.nameIndex;
+            Directory first = from.id <= to.id ? from : to;
+            Directory second = first == from ? to : from;
+            long firstStamp = first.lock.writeLock();
+            long secondStamp = second == first ? 0 : second.lock.writeLock();
+            try {
+                if (from.contents.get(oldName) != e || from.rejectsChanges() || to.rejectsChanges()) {
+                    throw new NoSuchFileOrDirectory("No such File or Directory", false);
+                }
+                FSObject existing = to.contents.get(newName);
+                if (existing != null && existing != e) throw new AlreadyExists(to.getPath() + newName + " already exists!");
+                if (from == to) {
+                    from.contents.rename(e, newName);
+                } else {
+                    from.contents.removeEntry(e);
+                }
+                if (e instanceof Directory) ((Directory) e).relink(newName, to);
+                else if (e instanceof File) ((File) e).relink(newName, to);
+                else throw new IllegalArgumentException("Cannot move " + e.getClass().getName());
+                if (from != to) to.contents.putIfAbsent(e);
+                Set<String> misses = to.misses;
+                if (misses != null) misses.remove(newName);
+            } finally {
+                if (second != first) second.lock.unlockWrite(secondStamp);
+                first.lock.unlockWrite(firstStamp);
+            }
+            if (from == to) {
+                from.renamed(e, oldName, nameIndex);
+            } else {
+                from.removed(e, oldName, nameIndex);
+                to.added(e);
+            }
+        }
+    }
+
+    // sets name and parent for move and renameEntry, which hold the locks of the old and the new parent
+    private void relink(String name, Directory parent) {
+        this.name = name;
+        this.parent = parent;
+        this.paths.invalidate();
+        adopt(parent.paths);
+    }
+
+    /**
+     * Called by File.setContent, while it holds the monitor of f, after the content of f changed.
+     * Updates the aggregates of the directory that counts f, if any, and of its ancestors.
+     */
+    static void fileResized(File f) {
+        Directory counting = f.countedIn;
+        if (counting == null) return; // not counted, or a pending roll-up will read the new size
+        if (counting.concurrent) {
+            counting.settleLater(f);
+            return;
+        }
+        synchronized (counting.aggregateLock) {
+            if (f.countedIn != counting) return; // dropped by release
+            int before = f.countedSize;
+            int size = f.getSize();
+            if (size == before) return;
+            f.countedSize = size;
+            counting.apply(size - before, 0, 0, before, size);
+        }
+        propagate(counting);
+    }
+
+    // counts e in the aggregates of this directory, while holding the monitor of e. A concurrent directory
+    // that still counts e, because its roll-up has not settled the removal yet, is made to let go of e first.
+    private void count(FSObject e) {
+        if (!(e instanceof File) && !(e instanceof Directory)) return;
+        while (true) {
+            Directory counting;
+            synchronized (this.aggregateLock) {
+                if (claim(e)) {
+                    countClaimed(e);
+                    return;
+                }
+                counting = countedIn(e);
+                if (counting == this) return;
+            }
+            if (counting != null && !counting.leave(e)) return; // e is also an entry there, which keeps counting it
+        }
+    }
+
+    // sets what counts e from null to this
+    private boolean claim(FSObject e) {
+        if (e instanceof File) return FILE_COUNTED_IN.compareAndSet((File) e, null, this);
+        return e instanceof Directory && COUNTED_IN.compareAndSet((Directory) e, null, this);
+    }
+
+    private static Directory countedIn(FSObject e) {
+        if (e instanceof File) return ((File) e).countedIn;
+        return e instanceof Directory ? ((Directory) e).countedIn : null;
+    }
+
+    // adds e, which this directory has just claimed, to the aggregates, while holding aggregateLock
+    private void countClaimed(FSObject e) {
+        if (e instanceof File) {
+            File f = (File) e;
+            f.countedSize = f.getSize();
+            apply(f.countedSize, 1, 0, -1, f.countedSize);
+        } else {
+            Directory d = (Directory) e; // claimed before its aggregates are read, see propagate
+            d.countedSize = d.totalSize;
+            d.countedFiles = d.fileCount;
+            d.countedDirectories = d.directoryCount + 1;
+            d.countedMax = d.maxFileSize;
+            apply(d.countedSize, d.countedFiles, d.countedDirectories, -1, d.countedMax);
+        }
+    }
+
+    // takes what is counted for e out of the aggregates of this directory, while holding the monitor of e
+    private void uncount(FSObject e) {
+        synchronized (this.aggregateLock) {
+            if (e instanceof File) {
+                File f = (File) e;
+                if (f.countedIn != this) return;
+                f.countedIn = null;
+                apply(-f.countedSize, -1, 0, f.countedSize, -1);
+            } else if (e instanceof Directory) {
+                Directory d = (Directory) e;
+                if (d.countedIn != this) return;
+                d.countedIn = null;
+                apply(-d.countedSize, -d.countedFiles, -d.countedDirectories, d.countedMax, -1);
+            }
+        }
+    }
+
+    // Concurrent directories do not make their creators wait for each other on aggregateLock. The thread that
+    // wins rollingUp settles its change right away, together with the changes recorded by others meanwhile.
+    // A thread that loses only records its entry in unsettled, marks the directory as changed for the listing
+    // caches and returns; the winner looks at unsettled again after it stopped rolling up.
+
+    // settles a change of e, an entry of this concurrent directory or one that has just left it, or records it
+    private void settleLater(FSObject e) {
+        if (ROLLING_UP.compareAndSet(this, 0, 1)) {
+            roll(e);
+        } else {
+            this.unsettled.add(e);
+            touch();
+        }
+        rollUp();
+    }
+
+    // settles the recorded entries unless another thread is doing so
+    private void rollUp() {
+        while (!this.unsettled.isEmpty() && ROLLING_UP.compareAndSet(this, 0, 1)) roll(null);
+    }
+
+    // settles first, if not null, and the recorded entries while holding rollingUp, then releases it and
+    // carries the result up
+    private void roll(FSObject first) {
+        List<FSObject> countedElsewhere = null;
+        try {
+            synchronized (this.aggregateLock) {
+                for (FSObject e = first != null ? first : this.unsettled.poll(); e != null; e = this.unsettled.poll()) {
+                    if (settle(e)) continue;
+                    if (countedElsewhere == null) countedElsewhere = new ArrayList<>();
+                    countedElsewhere.add(e);
+                }
+            }
+        } finally {
+            this.rollingUp = 0;
+        }
+        propagate(this);
+        if (countedElsewhere == null) return;
+        // the old directory of an entry that moved here has not settled the move yet
+        for (FSObject e : countedElsewhere) {
+            Directory counting = countedIn(e);
+            if (counting != this && (counting == null || counting.leave(e))) this.unsettled.add(e);
+        }
+    }
+
+    /**
+     * Makes what this directory counts for e match whether e is one of its entries now, while holding
+     * aggregateLock. Since every change records e after it changed the table, the last roll-up of e sees the
+     * final state, whatever it saw before.
+     *
+     * @return false if e is an entry that another directory still counts, so that it cannot be counted here yet
+     */
+    private boolean settle(FSObject e) {
+        if (!(e instanceof File) && !(e instanceof Directory)) return true;
+        boolean entry = this.contents.get(e.getName()) == e; // a ConcurrentChildTable, read without the lock
+        Directory counting = countedIn(e);
+        if (counting == this) {
+            if (!entry) {
+                uncount(e);
+            } else if (e instanceof File) {
+                File f = (File) e;
+                int before = f.countedSize;
+                int size = f.getSize();
+                if (size == before) return true;
+                f.countedSize = size;
+                apply(size - before, 0, 0, before, size);
+            }
+            return true;
+        }
+        if (!entry) return true;
+        if (counting == null && claim(e)) {
+            countClaimed(e);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Lets go of e for a directory that is about to count it: if this directory counts e although e is no
+     * longer one of its entries, e is uncounted here and the change carried up.
+     *
+     * @return false if e is still an entry of this directory
+     */
+    private boolean leave(FSObject e) {
+        synchronized (this.aggregateLock) {
+            if (countedIn(e) != this) return true;
+            if (get(e.getName()) == e) return false;
+            uncount(e);
+        }
+        propagate(this);
+        return true;
+    }
+
+    /**
+     * Brings what the ancestors count for d up to date with the aggregates of d, one level at a time, each under
+     * the aggregate lock of that ancestor. The walk ends where nothing changes, because a concurrent update already
+     * carried the change further up, or where d is no longer counted by the parent it was read from; whoever
+     * counted d elsewhere read its aggregates after this update had changed them.
+     */
+    private static void propagate(Directory d) {
+        for (Directory parent = d.countedIn; parent != null; d = parent, parent = d.countedIn) {
+            synchronized (parent.aggregateLock) {
+                if (d.countedIn != parent) return;
+                long size = d.totalSize, files = d.fileCount, directories = d.directoryCount + 1, max = d.maxFileSize;
+                long before = d.countedMax;
+                if (size == d.countedSize && files == d.countedFiles && directories == d.countedDirectories && max == before) return;
+                long bytes = size - d.countedSize;
+                long fileChange = files - d.countedFiles;
+                long directoryChange = directories - d.countedDirectories;
+                d.countedSize = size;
+                d.countedFiles = files;
+                d.countedDirectories = directories;
+                d.countedMax = max;
+                parent.apply(bytes, fileChange, directoryChange, before, max);
+            }
+        }
+    }
+
+    /**
+     * Applies a change of what is counted for one entry to the aggregates of this directory, while holding its
+     * aggregateLock. The counted values of the entry are already updated.
+     *
+     * @param before the largest file size the entry was counted with, or -1
+     * @param after  the largest file size the entry is counted with now, or -1. The maximum is only recomputed
+     *               from the entries when the last entry counted with it shrinks, so most changes take O(1) here.
+     */
+    private void apply(long bytes, long files, long directories, long before, long after) {
+        GENERATION.incrementAndGet(this);
+        this.totalSize += bytes;
+        this.fileCount += files;
+        this.directoryCount += directories;
+        if (before == after) return;
+        if (after > this.maxFileSize) {
+            this.maxFileSize = after;
+            this.maxCount = 1;
+        } else if (after == this.maxFileSize) {
+            this.maxCount++;
+        }
+        if (before == this.maxFileSize && --this.maxCount <= 0) recountMaxFileSize();
+    }
+
+    // recomputes the maximum and how many entries have it from what is counted for the entries, while holding
+    // aggregateLock. Entries that are being added or removed may be missed; their own update corrects the count.
+    private void recountMaxFileSize() {
+        long max = 0;
+        int count = 0;
+        for (FSObject elt : entries()) {
+            long size;
+            if (elt instanceof File && ((File) elt).countedIn == this) size = ((File) elt).countedSize;
+            else if (elt instanceof Directory && ((Directory) elt).countedIn == this) size = ((Directory) elt).countedMax;
+            else continue;
+            if (size > max) {
+                max = size;
+                count = 1;
+            } else if (size == max) {
+                count++;
+            }
+        }
+        this.maxFileSize = max;
+        this.maxCount = count;
+    }
+
+    /**
+     * @return total size of all files within the directory (and subsequent subdirectories). O(1).
+     */
+    public long getTotalSize() {
+        return this.totalSize;
+    }
+
+    /**
+     * @return number of files within the directory (and subsequent subdirectories). O(1).
+     */
+    public long getFileCount() {
+        return this.fileCount;
+    }
+
+    /**
+     * @return number of directories within the directory (and subsequent subdirectories). O(1).
+     */
+    public long getDirectoryCount() {
+        return this.directoryCount;
+    }
+
+    /**
+     * @return size of the largest file within the directory (and subsequent subdirectories). O(1).
+     */
+    public long getMaxFileSize() {
+        return this.maxFileSize;
+    }
+
+    /**
+     * Renames an entry of this directory for setName: re-keys it and sets its name while holding the lock,
+     * so that no lookup or addEntry sees the old key with the new name or the other way round.
+     * Does nothing if e is not an entry of this directory.
+     *
+     * @param e       the entry that is renamed
+     * @param newName the new name of the entry
+     * @return false if e is not an entry of this directory, so that the caller sets the name itself
+     * @throws IllegalArgumentException if another entry with the new name already exists.
+     */
+    boolean renameEntry(FSObject e, String newName) {
+        synchronized (e) {
+            String oldName;
+            NameIndex nameIndex = this.nameIndex;
+            long stamp = this.lock.writeLock();
+            try {
+                oldName = e.getName();
+                if (this.contents.get(oldName) != e) return false;
+                this.contents.rename(e, newName);
+                if (e instanceof Directory) ((Directory) e).relink(newName, this);
+                else if (e instanceof File) ((File) e).relink(newName, this);
+                Set<String> misses = this.misses;
+                if (misses != null) misses.remove(newName);
+            } finally {
+                this.lock.unlockWrite(stamp);
+            }
+            renamed(e, oldName, nameIndex);
+            return true;
+        }
+    }
+
+    // marks this directory and all its ancestors as changed
+    private void touch() {
+        for (Directory d = this; d != null; d = d.parentDirectory()) {
+            GENERATION.incrementAndGet(d);
+        }
+    }
+
+    /**
+     * Keep the entries of this directory ordered by name. Afterwards list(), listLong() and find() output
+     * this directory's entries in name order without sorting, and entriesWithPrefix is a range scan.
+     */
+    public void enableSortedIndex() {
+        long stamp = this.lock.writeLock();
+        try {
+            this.contents.enableSorted();
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+        touch();
+    }
+
+    /**
+     * Find the entries of this directory (not of its subdirectories) whose name starts with prefix.
+     * Takes O(log n + k) for k results if the directory has a sorted index, otherwise it scans and sorts.
+     *
+     * @param prefix the names have to start with, e.g. "log-2026-"
+     * @return the entries ordered by name
+     */
+    public List<FSObject> entriesWithPrefix(String prefix) {
+        long stamp = this.lock.readLock();
+        try {
+            return this.contents.withPrefix(prefix);
+        } finally {
+            this.lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Builds a trigram index over the names of all files and directories within this directory (and
+     * subsequent subdirectories). The index is kept up to date by addEntry, removeEntry and renames, and
+     * lets find(String) with search terms of at least three characters skip the walk through the tree.
+     */
+    public synchronized void enableNameIndex() {
+        if (this.nameIndex != null) return;
+        NameIndex nameIndex = new NameIndex();
+        long stamp = nameIndex.lock.writeLock();
+        try {
+            this.nameIndex = nameIndex;
+            for (FSObject elt : entries()) indexTree(elt, nameIndex);
+        } finally {
+            nameIndex.lock.unlockWrite(stamp);
+        }
+    }
+
+    // Changes of a name index hold its lock and check there that the entry still belongs to the indexed tree,
+    // so that they cannot interleave with a walk that indexes or unindexes a subtree. Walks hold the lock
+    // exclusively; changes of a single file or name hold it shared, so that creators do not wait for each other.
+
+    // locks index for a change of e: shared if only e itself is changed
+    private static long lockForChange(NameIndex index, FSObject e) {
+        return e instanceof Directory ? index.lock.writeLock() : index.lock.readLock();
+    }
+
+    // adds e and everything below it to the name index of this directory, if it has one
+    private void index(FSObject e) {
+        NameIndex nameIndex = this.nameIndex;
+        if (nameIndex == null) return;
+        long stamp = lockForChange(nameIndex, e);
+        try {
+            if (this.nameIndex == nameIndex) indexTree(e, nameIndex);
+        } finally {
+            nameIndex.lock.unlock(stamp);
+        }
+    }
+
+    // removes e, indexed under name, and everything below it from index, if not null
+    private static void unindex(FSObject e, String name, NameIndex index) {
+        if (index == null) return;
+        long stamp = lockForChange(index, e);
+        try {
+            unindexTree(e, name, index);
+        } finally {
+            index.lock.unlock(stamp);
+        }
+    }
+
+    // indexes e, which was renamed from oldName, under its new name, if this directory is still indexed by index
+    private void reindex(FSObject e, String oldName, NameIndex index) {
+        if (index == null) return;
+        long stamp = index.lock.readLock();
+        try {
+            index.remove(e, oldName);
+            if (this.nameIndex == index) index.add(e);
+        } finally {
+            index.lock.unlockRead(stamp);
+        }
+    }
+
+    // adds e and everything below it to the index, while holding the lock of index
+    private static void indexTree(FSObject e, NameIndex index) {
+        index.add(e);
+        if (!(e instanceof Directory) || ((Directory) e).nameIndex == index) return;
+        ((Directory) e).nameIndex = index;
+        for (Iterator<FSObject> it = new TreeWalker().iterator((Directory) e); it.hasNext(); ) {
+            FSObject elt = it.next();
+            index.add(elt);
+            if (elt instanceof Directory) ((Directory) elt).nameIndex = index;
+        }
+    }
+
+    // removes e, indexed under name, and everything below it from the index, while holding the lock of index
+    private static void unindexTree(FSObject e, String name, NameIndex index) {
+        index.remove(e, name);
+        if (!(e instanceof Directory)) return;
+        ((Directory) e).nameIndex = null;
+        for (Iterator<FSObject> it = new TreeWalker().iterator((Directory) e); it.hasNext(); ) {
+            FSObject elt = it.next();
+            index.remove(elt, elt.getName());
+            if (elt instanceof Directory) ((Directory) elt).nameIndex = null;
+        }
+    }
+
+    /**
+     * Looks up an entry by name. Names that were not found are remembered, so that repeated misses
+     * only cost one hash probe. addEntry and renameEntry drop a remembered miss again.
+     *
+     * @param name of the entry
+     * @return the entry or null
+     */
+    private FSObject lookup(String name) {
+        Set<String> misses = this.misses;
+        if (misses != null && misses.contains(name)) {
+            NEGATIVE_HITS.incrementAndGet(this);
+            return null;
+        }
+        FSObject elt = get(name);
+        return elt != null ? elt : rememberMiss(name);
+    }
+
+    // looks name up again under the read lock, so that no exclusive addEntry can slip in before the miss is
+    // remembered. Concurrent directories add entries under the shared lock, so the name is looked up once more
+    // after remembering it; an addEntry that is not seen by then removes the miss itself.
+    private FSObject rememberMiss(String name) {
+        long stamp = this.lock.readLock();
+        try {
+            FSObject elt = this.contents.get(name);
+            if (elt != null) return elt;
+            Set<String> misses = this.misses;
+            if (misses == null) {
+                misses = ConcurrentHashMap.newKeySet();
+                this.misses = misses;
+            } else if (misses.size() >= NEGATIVE_CACHE_SIZE) {
+                misses.clear();
+            }
+            misses.add(name);
+            if (this.concurrent && (elt = this.contents.get(name)) != null) misses.remove(name);
+            return elt;
+        } finally {
+            this.lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @return how many lookups were answered by the cache of missing names.
+     */
+    public long getNegativeHits() {
+        return this.negativeHits;
     }
 
     /**
@@ -115,11 +1101,8 @@ public class Directory implements FSObject {
      * @return If the file is found, return an Optional with the File reference. Otherwise return an empty Optional instance.
      */
     public Optional<File> containsFile(String name) {
-        for (FSObject elt : this.contents) {
-            if ((elt instanceof File) && (elt.getName().equals(name))) {
-                return Optional.of((File) elt);// File references
-            }
-        }
+        FSObject elt = lookup(name);
+        if (elt instanceof File) return Optional.of((File) elt);
         return Optional.empty();
     }
 
@@ -130,11 +1113,8 @@ public class Directory implements FSObject {
      * @return If the directory is found, return an Optional with the Directory reference. Otherwise return an empty Optional instance.
      */
     public Optional<Directory> containsDirectory(String name) {
-        for (FSObject elt : this.contents) {
-            if ((elt instanceof Directory) && (elt.getName().equals(name))) {
-                return Optional.of((Directory) elt);
-            }
-        }
+        FSObject elt = lookup(name);
+        if (elt instanceof Directory) return Optional.of((Directory) elt);
         return Optional.empty();
     }
 
@@ -145,12 +1125,17 @@ public class Directory implements FSObject {
      * @return If the object is found, return an Optional with the FSObject reference. Otherwise return an empty Optional instance.
      */
     public Optional<FSObject> contains(String name) {
-        for (FSObject elt : this.contents) {
-            if (elt.getName().equals(name)) {
-                return Optional.of(elt);
-            }
-        }
-        return Optional.empty();
+        return Optional.ofNullable(lookup(name));
+    }
+
+    /**
+     * Walk all files and directories within the directory (and subsequent subdirectories) lazily.
+     * A directory is visited before its contents, in the same order as list() prints them.
+     *
+     * @return a sequential Stream of the found files and directories
+     */
+    public Stream<FSObject> walk() {
+        return new TreeWalker().stream(this);
     }
 
     /**
@@ -158,19 +1143,40 @@ public class Directory implements FSObject {
      * For a directory containing a directory "d1" and a file "f1.txt" one would get for example "d1\nf1.txt"
      * ("\n" denotes a new line)
      *
+     * The result is cached until something below the directory changes.
+     *
      * @return Contents of the directory as multi-line String
      */
     public String list() {
+        long generation = this.generation;
+        CachedString cached = this.cachedList;
+        if (cached != null && cached.generation == generation) return cached.value;
         StringBuilder stringBuilder = new StringBuilder();
-        for (FSObject elt : this.contents) {
-            if (elt instanceof File) {
-                stringBuilder.append(elt.getName()).append("\n");
-            }
-            if (elt instanceof Directory) {
-                stringBuilder.append(elt.getName()).append("\n").append(((Directory) elt).list());
-            }
+        try {
+            list(stringBuilder);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // StringBuilder does not throw
         }
-        return stringBuilder.toString();
+        this.cachedList = new CachedString(stringBuilder.toString(), generation);
+        return this.cachedList.value;
+    }
+
+    /**
+     * Like list(), but writes each line to out as soon as it is found.
+     *
+     * @param out receives the listing
+     * @throws IOException if out throws
+     */
+    public void list(Appendable out) throws IOException {
+        CachedString cached = this.cachedList;
+        if (cached != null && cached.generation == this.generation) {
+            out.append(cached.value);
+            return;
+        }
+        new TreeWalker().walk(this, (elt, depth) -> {
+            out.append(elt.getName()).append("\n");
+            return true;
+        });
     }
 
     /**
@@ -180,29 +1186,49 @@ public class Directory implements FSObject {
      * - for an empty directory "d2" one would get "d d2 (empty)"
      * - for a file "f1.txt" containing "Hello World" one would get "f f1.txt (size 11)"
      *
+     * The result is cached until something below the directory changes.
+     *
      * @return Contents of the directory with additional information as multi-line String
      */
     public String listLong() {
+        long generation = this.generation;
+        CachedString cached = this.cachedListLong;
+        if (cached != null && cached.generation == generation) return cached.value;
         StringBuilder stringBuilder = new StringBuilder();
-        for (FSObject elt : this.contents) {
+        try {
+            listLong(stringBuilder);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // StringBuilder does not throw
+        }
+        this.cachedListLong = new CachedString(stringBuilder.toString(), generation);
+        return this.cachedListLong.value;
+    }
+
+    /**
+     * Like listLong(), but writes each line to out as soon as it is found.
+     *
+     * @param out receives the listing
+     * @throws IOException if out throws
+     */
+    public void listLong(Appendable out) throws IOException {
+        CachedString cached = this.cachedListLong;
+        if (cached != null && cached.generation == this.generation) {
+            out.append(cached.value);
+            return;
+        }
+        new TreeWalker().walk(this, (elt, depth) -> {
             if (elt instanceof File) {
-                stringBuilder.append("f ").append(elt.getName()).append(" (size ").append(((File) elt).getSize()).append(")\n");
+                out.append("f ").append(elt.getName()).append(" (size ").append(String.valueOf(((File) elt).getSize())).append(")\n");
             }
             if (elt instanceof Directory) {
-                stringBuilder.append("d ")
+                out.append("d ")
                         .append(elt.getName())
                         .append(" (")
                         .append(((Directory) elt).isEmpty() ? "" : "not ")
-                        .append("empty)\n")
-                        .append(((Directory) elt).listLong());
-
-                /*if (!((Directory) elt).isEmpty())
-                    stringBuilder.append(" (not empty)\n");
-                else
-                    stringBuilder.append(" (empty)\n");*/
+                        .append("empty)\n");
             }
-        }
-        return stringBuilder.toString();
+            return true;
+        });
     }
 
     /**
@@ -211,39 +1237,100 @@ public class Directory implements FSObject {
      * @return A multi-line String with the full path of found files and directories.
      */
     public String find() {
-        StringBuilder stringBuilder = new StringBuilder();
-        for (FSObject elt : this.contents) {
-            if (elt instanceof File) {
-                stringBuilder.append(elt.getPath()).append("\n");
-            }
-            if (elt instanceof Directory) {
-                stringBuilder.append(elt.getPath()).append("\n").append(((Directory) elt).find());
+        return find("");
+    }
 
-            }
-        }
-        return stringBuilder.toString();
+    /**
+     * Like find(), but writes each path to out as soon as it is found.
+     *
+     * @param out receives the paths
+     * @throws IOException if out throws
+     */
+    public void find(Appendable out) throws IOException {
+        find("", out);
     }
 
     /**
      * Find all files and directories within the current directory (and subsequent subdirectories)
      * whose name contains a certain searchTerm.
+     * If the tree has a name index and searchTerm is at least three characters long, the index is used
+     * to only walk the directories that lead to a match; the output is the same either way.
      *
      * @param searchTerm Term to search for in file and directory names.
      * @return A multi-line String with the full path of found files and directories.
      */
     public String find(String searchTerm) {
         StringBuilder stringBuilder = new StringBuilder();
-        for (FSObject elt : this.contents) {
-            if (elt instanceof File && elt.getName().contains(searchTerm)) {
-                stringBuilder.append(elt.getPath()).append("\n");
+        try {
+            find(searchTerm, stringBuilder);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // StringBuilder does not throw
+        }
+        return stringBuilder.toString();
+    }
+
+    /**
+     * Like find(String), but writes each path to out as soon as it is found.
+     *
+     * @param searchTerm Term to search for in file and directory names.
+     * @param out        receives the paths
+     * @throws IOException if out throws
+     */
+    public void find(String searchTerm, Appendable out) throws IOException {
+        Set<FSObject> leadingToMatch = null;
+        NameIndex nameIndex = this.nameIndex;
+        if (nameIndex != null && searchTerm.length() >= NameIndex.GRAM) {
+            leadingToMatch = Collections.newSetFromMap(new IdentityHashMap<>());
+            List<FSObject> matches;
+            long stamp = nameIndex.lock.readLock();
+            try {
+                matches = nameIndex.query(searchTerm);
+            } finally {
+                nameIndex.lock.unlockRead(stamp);
             }
-            if (elt instanceof Directory) {
-                if (elt.getName().contains(searchTerm)) {
-                    stringBuilder.append(elt.getPath()).append("\n");
-                }
-                stringBuilder.append(((Directory) elt).find(searchTerm));
+            for (FSObject elt : matches) {
+                if (!isAncestorOf(elt)) continue;
+                // a concurrent removal may detach elt meanwhile
+                for (FSObject p = elt.getParent(); p != null && p != this && leadingToMatch.add(p); ) p = p.getParent();
             }
         }
-        return stringBuilder.toString();
+        Set<FSObject> descendInto = leadingToMatch;
+        new TreeWalker().walk(this, (elt, depth) -> {
+            if (elt.getName().contains(searchTerm)) out.append(elt.getPath()).append("\n");
+            return descendInto == null || descendInto.contains(elt);
+        });
+    }
+
+    // true if e is somewhere below this directory
+    boolean isAncestorOf(FSObject e) {
+        for (FSObject p = e.getParent(); p != null; p = p.getParent()) {
+            if (p == this) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Like find(String), but searches large subdirectories in parallel on the common ForkJoinPool.
+     * The output is the same as that of find(String).
+     *
+     * @param searchTerm Term to search for in file and directory names.
+     * @return A multi-line String with the full path of found files and directories.
+     */
+    public String findParallel(String searchTerm) {
+        return findParallel(searchTerm, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Like find(String), but searches large subdirectories in parallel.
+     * Changes made while the search runs may or may not be found. Searches that find(String) answers
+     * from the name index are not split up.
+     *
+     * @param searchTerm Term to search for in file and directory names.
+     * @param pool       runs the search
+     * @return A multi-line String with the full path of found files and directories.
+     */
+    public String findParallel(String searchTerm, ForkJoinPool pool) {
+        if (this.nameIndex != null && searchTerm.length() >= NameIndex.GRAM) return find(searchTerm); // already pruned
+        return ParallelFind.find(this, searchTerm, pool);
     }
-}
\ No newline at end of file
+}
@@ -6,6 +6,7 @@ public interface FSObject {
 
     /**
      * @param name the new name of the file system object
+     * @throws IllegalArgumentException if name is empty, "." or "..", or contains '/'.
      */
     void setName(String name);
 
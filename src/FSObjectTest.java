@@ -1,7 +1,17 @@
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -45,6 +55,105 @@ public class FSObjectTest {
         assertEquals("f1new.txt", f1.getName());
     }
 
+    @Test
+    void testSetNameUpdatesLookup() {
+        f1.setName("f1new.txt");
+        assertFalse(d1.contains("f1.txt").isPresent());
+        assertEquals(f1, d1.containsFile("f1new.txt").get());
+        d1.setName("d1new");
+        assertFalse(root.containsDirectory("d1").isPresent());
+        assertEquals(d1, root.containsDirectory("d1new").get());
+        assertThrows(IllegalArgumentException.class, () -> d2.setName("d1new"));
+        assertEquals("d2", d2.getName());
+    }
+
+    @Test
+    void testAddEntryDuplicate() {
+        assertThrows(AlreadyExists.class, () -> root.addEntry(new File("d1", root)));
+        assertEquals(d1, root.contains("d1").get());
+    }
+
+    @Test
+    void testManyEntries() throws AlreadyExists {
+        int n = ChildTable.INLINE_CAPACITY * 4;
+        for (int i = 0; i < n; i++) d2.addEntry(new File("f" + i, d2));
+        assertEquals(n, d2.getContents().size());
+        assertTrue(d2.containsFile("f" + (n - 1)).isPresent());
+        d2.containsFile("f0").get().setName("renamed");
+        assertTrue(d2.contains("renamed").isPresent());
+        assertFalse(d2.contains("f0").isPresent());
+        for (int i = 1; i < n; i++) d2.containsFile("f" + i).get().remove();
+        assertEquals(1, d2.getContents().size());
+        assertTrue(d2.contains("renamed").isPresent());
+    }
+
+    @Test
+    void testSortedIndex() throws AlreadyExists {
+        for (String n : new String[]{"log-2026-02", "b", "log-2025-12", "log-2026-01", "a"}) d2.addEntry(new File(n, d2));
+        assertEquals("log-2026-02\nb\nlog-2025-12\nlog-2026-01\na\n", d2.list());
+        d2.enableSortedIndex();
+        assertEquals("a\nb\nlog-2025-12\nlog-2026-01\nlog-2026-02\n", d2.list());
+        d2.containsFile("b").get().setName("z");
+        d2.addEntry(new File("c", d2));
+        d2.containsFile("a").get().remove();
+        assertEquals("c\nlog-2025-12\nlog-2026-01\nlog-2026-02\nz\n", d2.list());
+        List<FSObject> found = d2.entriesWithPrefix("log-2026-");
+        assertEquals(2, found.size());
+        assertEquals("log-2026-01", found.get(0).getName());
+        assertEquals("log-2026-02", found.get(1).getName());
+        assertEquals(List.of(f1), d1.entriesWithPrefix("f"));
+    }
+
+    @Test
+    void testAggregates() throws AlreadyExists, NotEmpty {
+        f1.setContent("Hallo");
+        File f2 = new File("f2.txt", d2);
+        d2.addEntry(f2);
+        f2.setContent("Hello World");
+        assertEquals(16, root.getTotalSize());
+        assertEquals(2, root.getFileCount());
+        assertEquals(2, root.getDirectoryCount());
+        assertEquals(11, root.getMaxFileSize());
+        assertEquals(5, d1.getMaxFileSize());
+        f2.setContent("Hi");
+        assertEquals(7, root.getTotalSize());
+        assertEquals(5, root.getMaxFileSize());
+        Directory d3 = new Directory("d3", d1);
+        d1.addEntry(d3);
+        assertEquals(3, root.getDirectoryCount());
+        f1.remove();
+        assertEquals(2, root.getTotalSize());
+        assertEquals(1, root.getFileCount());
+        assertEquals(2, root.getMaxFileSize());
+        assertEquals(0, d1.getMaxFileSize());
+        root.removeEntry(d1);
+        assertEquals(1, root.getDirectoryCount());
+    }
+
+    @Test
+    void testMaxFileSizeWithTies() throws AlreadyExists {
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            File f = new File("t" + i, d2);
+            d2.addEntry(f);
+            f.setContent("12345");
+            files.add(f);
+        }
+        f1.setContent("123");
+        files.get(0).setContent("1");
+        assertEquals(5, root.getMaxFileSize()); // two files still have the maximum
+        files.get(1).remove();
+        assertEquals(5, root.getMaxFileSize());
+        files.get(2).setContent("12");
+        assertEquals(3, root.getMaxFileSize()); // the last one shrank, recomputed from f1
+        assertEquals(2, d2.getMaxFileSize());
+        f1.setContent("12");
+        assertEquals(2, root.getMaxFileSize());
+        files.get(0).setContent("1234567");
+        assertEquals(7, root.getMaxFileSize());
+        assertEquals(2, d1.getMaxFileSize());
+    }
+
     @Test
     void testGetParent() {
         assertNull(root.getParent());
@@ -64,6 +173,37 @@ public class FSObjectTest {
         assertEquals(msg.length(), f1.getSize());
     }
 
+    @Test
+    void testFileBytes() {
+        f1.setContent("Gr\u00fc\u00dfe \u20ac");
+        assertEquals("Gr\u00fc\u00dfe \u20ac", f1.getContent());
+        assertEquals(11, f1.getSize()); // bytes in UTF-8, not chars
+        assertEquals(11, root.getTotalSize());
+
+        byte[] binary = {0, (byte) 0xff, (byte) 0xc3, 10, (byte) 0x80};
+        f1.setContentBytes(binary);
+        binary[0] = 1; // the file keeps its own copy
+        assertArrayEquals(new byte[]{0, (byte) 0xff, (byte) 0xc3, 10, (byte) 0x80}, f1.getContentBytes());
+        f1.getContentBytes()[0] = 1;
+        assertEquals(0, f1.getContentBytes()[0]);
+        assertEquals(5, root.getTotalSize());
+
+        ByteBuffer buffer = f1.getContentBuffer();
+        assertTrue(buffer.isReadOnly());
+        assertEquals(5, buffer.remaining());
+        ByteBuffer source = ByteBuffer.wrap("xxHello".getBytes(StandardCharsets.UTF_8));
+        source.position(2);
+        f1.setContentBuffer(source);
+        assertEquals(2, source.position());
+        assertEquals("Hello", f1.getContent());
+        assertEquals((byte) 0xff, buffer.get(1)); // the old buffer still sees the old content
+
+        f1.setContentBytes(null);
+        assertNull(f1.getContent());
+        assertNull(f1.getContentBuffer());
+        assertEquals(0, root.getTotalSize());
+    }
+
     @Test
     void testGetPath() {
         assertEquals("/", root.getPath());
@@ -72,6 +212,36 @@ public class FSObjectTest {
         assertEquals("/d1/f1.txt", f1.getPath());
     }
 
+    @Test
+    void testGetPathAfterRenameAndMove() throws AlreadyExists {
+        assertEquals("/d1/f1.txt", f1.getPath());
+        d1.setName("d1new");
+        assertEquals("/d1new/f1.txt", f1.getPath());
+        assertEquals("/d1new/", d1.getPath());
+        root.removeEntry(d1);
+        d2.addEntry(d1);
+        d1.setParent(d2);
+        assertEquals("/d2/d1new/f1.txt", f1.getPath());
+        f1.setName("f2.txt");
+        assertEquals("/d2/d1new/f2.txt", f1.getPath());
+    }
+
+    @Test
+    void testGetPathOfSubtreeBuiltDetached() throws AlreadyExists {
+        Directory x = new Directory("x", null);
+        Directory c = new Directory("c", x);
+        x.addEntry(c);
+        File f = new File("f.txt", c);
+        c.addEntry(f);
+        assertEquals("/c/f.txt", f.getPath());
+        x.setParent(d1);
+        d1.addEntry(x);
+        assertEquals("/d1/x/c/f.txt", f.getPath());
+        d1.setName("d3");
+        assertEquals("/d3/x/c/", c.getPath());
+        assertEquals("/d3/x/c/f.txt", f.getPath());
+    }
+
     @Test
     void testContainsFile() {
         Optional<File> of1 = d1.containsFile(f1.getName());
@@ -109,6 +279,20 @@ public class FSObjectTest {
         assertFalse(root.contains("foo").isPresent());
     }
 
+    @Test
+    void testNegativeLookupCache() throws AlreadyExists {
+        assertFalse(d2.contains("foo").isPresent());
+        assertEquals(0, d2.getNegativeHits());
+        assertFalse(d2.contains("foo").isPresent());
+        assertFalse(d2.containsFile("foo").isPresent());
+        assertEquals(2, d2.getNegativeHits());
+        d2.addEntry(new File("foo", d2));
+        assertTrue(d2.containsFile("foo").isPresent());
+        assertFalse(d2.contains("bar").isPresent());
+        d2.containsFile("foo").get().setName("bar");
+        assertTrue(d2.contains("bar").isPresent());
+    }
+
     @Test
     void testRemoveEntry() {
         d1.removeEntry(f1);
@@ -161,6 +345,22 @@ public class FSObjectTest {
         assertEquals("", d2.list().trim());
     }
 
+    @Test
+    void testListingCache() throws AlreadyExists {
+        String listing = root.listLong();
+        assertSame(listing, root.listLong());
+        f1.setContent("Hallo");
+        assertTrue(root.listLong().contains("f f1.txt (size 5)"));
+        f1.setName("f2.txt");
+        assertTrue(root.listLong().contains("f f2.txt (size 5)"));
+        d2.addEntry(new File("f3.txt", d2));
+        assertTrue(root.listLong().contains("d d2 (not empty)"));
+        assertTrue(root.list().contains("f3.txt"));
+        d2.containsFile("f3.txt").get().remove();
+        assertTrue(root.listLong().contains("d d2 (empty)"));
+        assertFalse(root.list().contains("f3.txt"));
+    }
+
     @Test
     void testFindName() {
         assertEquals("/d1/f1.txt", root.find("f1").trim());
@@ -174,12 +374,336 @@ public class FSObjectTest {
         assertFalse(root.find("1").contains("d2"));
     }
 
+    @Test
+    void testFindParallel() throws AlreadyExists {
+        for (int i = 0; i < ParallelFind.FORK_THRESHOLD + 10; i++) {
+            d2.addEntry(new File("big" + i, d2));
+            d1.addEntry(new File("small" + i + ".txt", d1));
+        }
+        assertEquals(root.find("1"), root.findParallel("1"));
+        assertEquals(root.find(), root.findParallel(""));
+        assertEquals(d2.find("big"), d2.findParallel("big", new ForkJoinPool(2)));
+    }
+
     @Test
     void testDontFind() {
         assertEquals("", d1.find("2").trim());
         assertEquals("", root.find("abc").trim());
     }
 
+    @Test
+    void testRemoveRecursive() throws AlreadyExists {
+        File f2 = new File("f2.txt", d2);
+        d2.addEntry(f2);
+        f2.setContent("Hello");
+        Directory d3 = new Directory("d3", d1);
+        d1.addEntry(d3);
+        f1.setContent("Hi");
+        d1.removeRecursive(Runnable::run);
+        assertEquals(Optional.empty(), root.contains("d1"));
+        assertEquals(5, root.getTotalSize());
+        assertEquals(1, root.getFileCount());
+        assertEquals(1, root.getDirectoryCount());
+        assertEquals("/d2/\n/d2/f2.txt\n", root.find());
+        // released: emptied, but parents, paths and contents stay for whoever still uses a removed node
+        assertTrue(d1.isEmpty());
+        assertEquals("Hi", f1.getContent());
+        assertEquals("/d1/f1.txt", f1.getPath());
+        assertNull(d1.getParent());
+        assertEquals(d1, d3.getParent());
+        assertEquals("/d1/d3/", d3.getPath());
+        assertTrue(d3.isRemoved());
+        assertFalse(d2.isRemoved());
+        assertThrows(IllegalStateException.class, () -> d1.addEntry(new File("new.txt", d1)));
+        assertThrows(IllegalStateException.class, () -> d3.addEntries(List.of(new File("new.txt", d3))));
+        assertThrows(NoSuchFileOrDirectory.class, () -> Directory.move(f2, d2, d3, "f2.txt"));
+        assertEquals(f2, d2.containsFile("f2.txt").get());
+    }
+
+    @Test
+    void testRemoveEmptyDirRejectsEntries() throws NotEmpty {
+        d2.remove();
+        assertTrue(d2.isRemoved());
+        assertEquals("/d2/", d2.getPath());
+        assertThrows(IllegalStateException.class, () -> d2.addEntry(new File("new.txt", d2)));
+        assertEquals(2, root.getDirectoryCount() + root.getFileCount());
+    }
+
+    @Test
+    void testCopy() throws AlreadyExists {
+        f1.setContent("Hello");
+        Directory copy = d1.copy("d1copy", d2);
+        d2.addEntry(copy);
+        File f1copy = copy.containsFile("f1.txt").get();
+        assertNotSame(f1, f1copy);
+        assertEquals(f1.getContent(), f1copy.getContent());
+        assertEquals("/d2/d1copy/f1.txt", f1copy.getPath());
+        assertEquals(10, root.getTotalSize());
+        assertEquals(3, root.getDirectoryCount());
+        f1copy.setContent("Hi");
+        assertEquals("Hello", f1.getContent());
+        assertEquals(5, d1.getTotalSize());
+        assertEquals(2, d2.getTotalSize());
+    }
+
+    @Test
+    void testConcurrentChanges() throws Exception {
+        int threads = 4, files = 2_000;
+        Directory shared = new Directory("shared", root);
+        root.addEntry(shared);
+        List<Thread> workers = new ArrayList<>();
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            workers.add(new Thread(() -> {
+                try {
+                    Directory own = new Directory("t" + id, root);
+                    root.addEntry(own);
+                    for (int i = 0; i < files; i++) {
+                        File f = new File("f" + id + "-" + i, shared);
+                        shared.addEntry(f);
+                        f.setContent("x");
+                        own.addEntry(new File("g" + i, own));
+                        if (i % 2 == 0) f.remove();
+                        shared.contains("f" + id + "-" + (i / 2)); // readers race with writers
+                        if (i % 500 == 0) shared.list();
+                    }
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            }));
+        }
+        for (Thread worker : workers) worker.start();
+        for (Thread worker : workers) worker.join();
+        assertEquals(List.of(), failures);
+        assertEquals(threads * files / 2, shared.getContents().size());
+        assertEquals(threads * files / 2, shared.getTotalSize());
+        assertEquals(threads * files / 2 + threads * files + 1, root.getFileCount());
+        assertEquals(threads + 3, root.getDirectoryCount());
+        assertEquals(threads * files / 2 + threads * files + 1, root.walk().filter(e -> e instanceof File).count());
+    }
+
+    @Test
+    void testConcurrentMoves() throws Exception {
+        // moving d1 into d2 and d2 into d1 at the same time must not create a cycle
+        for (int round = 0; round < 200; round++) {
+            setUp();
+            Thread a = new Thread(() -> {
+                try {
+                    Directory.move(d1, root, d2, "d1");
+                } catch (IllegalArgumentException | NoSuchFileOrDirectory | AlreadyExists ignored) {
+                    // the other move came first
+                }
+            });
+            Thread b = new Thread(() -> {
+                try {
+                    Directory.move(d2, root, d1, "d2");
+                } catch (IllegalArgumentException | NoSuchFileOrDirectory | AlreadyExists ignored) {
+                    // the other move came first
+                }
+            });
+            a.start();
+            b.start();
+            a.join();
+            b.join();
+            assertEquals(1, root.getContents().size());
+            assertEquals(2, root.getDirectoryCount());
+            assertTrue(root.find().contains("/f1.txt"));
+        }
+    }
+
+    @Test
+    void testConcurrentDirectory() throws Exception {
+        int threads = 4, files = 2_000;
+        Directory spool = new Directory("spool", root, true);
+        root.addEntry(spool);
+        assertTrue(spool.isConcurrent());
+        List<Thread> workers = new ArrayList<>();
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        LongAdder created = new LongAdder();
+        for (int t = 0; t < threads; t++) {
+            workers.add(new Thread(() -> {
+                try {
+                    for (int i = 0; i < files; i++) {
+                        // all threads race for the same names, exactly one of them may win each;
+                        // the lookups leave misses behind that the adds have to clear
+                        spool.contains("job" + i);
+                        try {
+                            spool.addEntry(new File("job" + i, spool));
+                            created.increment();
+                        } catch (AlreadyExists ignored) {
+                            // another thread was first
+                        }
+                    }
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            }));
+        }
+        for (Thread worker : workers) worker.start();
+        for (Thread worker : workers) worker.join();
+        assertEquals(List.of(), failures);
+        assertEquals(files, created.sum());
+        assertEquals(files, spool.getContents().size());
+        assertEquals(files, spool.getFileCount());
+        for (int i = 0; i < files; i++) assertTrue(spool.contains("job" + i).isPresent()); // no stale misses
+        assertTrue(spool.copy("spool2", root).isConcurrent());
+        assertFalse(d1.isConcurrent());
+    }
+
+    @Test
+    void testConcurrentAddAndRemoveOfOneEntry() throws Exception {
+        // adding, resizing and removing the same file at once must leave no ghost in the index or the aggregates
+        Directory spool = new Directory("spool", root, true);
+        root.addEntry(spool);
+        root.enableNameIndex();
+        File job = new File("job.txt", spool);
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        Runnable adder = () -> {
+            for (int i = 0; i < 20_000; i++) {
+                try {
+                    spool.addEntry(job);
+                } catch (AlreadyExists ignored) {
+                    // still there
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            }
+        };
+        Runnable remover = () -> {
+            for (int i = 0; i < 20_000; i++) {
+                spool.removeEntry(job);
+                job.setContent(i % 2 == 0 ? "x" : "xyz");
+            }
+        };
+        Thread a = new Thread(adder), b = new Thread(remover), c = new Thread(adder);
+        a.start();
+        b.start();
+        c.start();
+        a.join();
+        b.join();
+        c.join();
+        assertEquals(List.of(), failures);
+        boolean present = spool.contains("job.txt").isPresent();
+        assertEquals(present ? "/spool/job.txt\n" : "", root.find("job"));
+        assertEquals(present ? 1 : 0, spool.getFileCount());
+        assertEquals(present ? job.getSize() : 0, spool.getTotalSize());
+        assertEquals(present ? job.getSize() : 0, root.getMaxFileSize());
+        spool.removeEntry(job);
+        assertEquals("", root.find("job"));
+        assertEquals(0, root.getTotalSize());
+        assertEquals(0, root.getMaxFileSize());
+    }
+
+    @Test
+    void testConcurrentDirectoryRollUp() throws Exception {
+        // files move between two concurrent directories and a plain one while they are written;
+        // the roll-ups of the concurrent ones must not lose or double count any of them
+        Directory spoolA = new Directory("a", d1, true);
+        Directory spoolB = new Directory("b", d1, true);
+        d1.addEntry(spoolA);
+        d1.addEntry(spoolB);
+        Directory[] dirs = {spoolA, spoolB, d2};
+        int threads = 4, files = 50;
+        List<Thread> workers = new ArrayList<>();
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            workers.add(new Thread(() -> {
+                try {
+                    File[] own = new File[files];
+                    for (int i = 0; i < files; i++) {
+                        own[i] = new File("t" + thread + "-" + i, spoolA);
+                        spoolA.addEntry(own[i]);
+                    }
+                    for (int round = 0; round < 200; round++) {
+                        File f = own[round % files];
+                        Directory from = (Directory) f.getParent();
+                        Directory.move(f, from, dirs[(round + thread) % dirs.length], f.getName());
+                        f.setContent(round % 3 == 0 ? "" : "x".repeat(round % 7));
+                    }
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            }));
+        }
+        for (Thread worker : workers) worker.start();
+        for (Thread worker : workers) worker.join();
+        assertEquals(List.of(), failures);
+        for (Directory d : new Directory[]{spoolA, spoolB, d2, d1, root}) {
+            long size = 0, count = 0, max = 0;
+            for (FSObject e : d.walk().collect(Collectors.toList())) {
+                if (!(e instanceof File)) continue;
+                size += ((File) e).getSize();
+                count++;
+                max = Math.max(max, ((File) e).getSize());
+            }
+            assertEquals(size, d.getTotalSize(), d.getPath());
+            assertEquals(count, d.getFileCount(), d.getPath());
+            assertEquals(max, d.getMaxFileSize(), d.getPath());
+        }
+        assertEquals(threads * files + 1, root.getFileCount());
+    }
+
+    @Test
+    void testWalk() throws AlreadyExists {
+        assertEquals(List.of(d1, f1, d2), root.walk().collect(Collectors.toList()));
+        d2.addEntry(new File("f2.txt", d2));
+        assertEquals(2, root.walk().filter(e -> e instanceof File).count());
+        assertEquals(Optional.of(d1), root.walk().findFirst());
+    }
+
+    @Test
+    void testTreeWalkerOrderAndLimits() throws IOException, AlreadyExists {
+        Directory d3 = new Directory("d3", d1);
+        d1.addEntry(d3);
+        List<String> pre = new ArrayList<>();
+        List<String> post = new ArrayList<>();
+        new TreeWalker().walk(root, new TreeWalker.Visitor() {
+            @Override
+            public boolean visit(FSObject elt, int depth) {
+                pre.add(elt.getName() + depth);
+                return true;
+            }
+
+            @Override
+            public void leave(FSObject elt, int depth) {
+                post.add(elt.getName());
+            }
+        });
+        assertEquals(List.of("d11", "f1.txt2", "d32", "d21"), pre);
+        assertEquals(List.of("f1.txt", "d3", "d1", "d2"), post);
+        assertEquals(List.of(d1, d2), new TreeWalker(1).stream(root).collect(Collectors.toList()));
+        List<FSObject> pruned = new ArrayList<>();
+        new TreeWalker().walk(root, (elt, depth) -> pruned.add(elt) && elt != d1);
+        assertEquals(List.of(d1, d2), pruned);
+    }
+
+    @Test
+    void testDeepTree() throws AlreadyExists {
+        Directory dir = d2;
+        for (int i = 0; i < 20_000; i++) {
+            Directory next = new Directory("d", dir);
+            dir.addEntry(next);
+            dir = next;
+        }
+        dir.addEntry(new File("leaf", dir));
+        assertTrue(dir.getPath().startsWith("/d2/d/d/"));
+        assertEquals(dir.getPath() + "leaf\n", d2.find("leaf"));
+        assertEquals(20_001, d2.list().split("\n").length);
+        assertEquals(20_001, d2.walk().count());
+    }
+
+    @Test
+    void testFindToAppendable() throws IOException {
+        StringWriter out = new StringWriter();
+        root.find("1", out);
+        assertEquals(root.find("1"), out.toString());
+        out = new StringWriter();
+        root.listLong(out);
+        assertEquals(root.listLong(), out.toString());
+    }
+
     @Test
     void testFindAll() {
         assertTrue(root.find().contains("/d1/"));
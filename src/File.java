@@ -1,7 +1,15 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
 public class File implements FSObject {
-    private String name;
-    private FSObject parent;
-    private String content;
+    private volatile String name;
+    private volatile FSObject parent;
+    private volatile byte[] content; // never changed in place, so copies can share it; null if never written
+    private volatile CachedString cachedPath;
+    private volatile String removedPath; // the path this file had when remove() detached it
+    // what the aggregates of the parent count for this file, guarded by the parent's aggregate lock (see Directory)
+    volatile Directory countedIn; // null while not counted, set from null with a CAS (see Directory.claim)
+    int countedSize;
 
     /**
      * The constructor.
@@ -23,7 +31,11 @@ public class File implements FSObject {
     // name setter
     @Override
     public void setName(String name) {
+        HackerFS.checkName(name);
+        FSObject parent = this.parent;
+        if (parent instanceof Directory && ((Directory) parent).renameEntry(this, name)) return;
         this.name = name;
+        this.cachedPath = null;
     }
 
     // parent getter
@@ -36,34 +48,108 @@ public class File implements FSObject {
     @Override
     public void setParent(FSObject parent) {
         this.parent = parent;
+        this.cachedPath = null;
     }
 
     /**
      * Read contents of the file.
      *
-     * @return content of the file
+     * @return content of the file decoded as UTF-8, or null if nothing was written
      */
     public String getContent() {
-        return this.content;
+        byte[] content = this.content;
+        return content == null ? null : new String(content, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Read contents of the file as bytes.
+     *
+     * @return a copy of the content, or null if nothing was written
+     */
+    public byte[] getContentBytes() {
+        byte[] content = this.content;
+        return content == null ? null : content.clone();
+    }
+
+    /**
+     * Read contents of the file without copying them.
+     *
+     * @return a read-only buffer over the content, or null if nothing was written
+     */
+    public ByteBuffer getContentBuffer() {
+        byte[] content = this.content;
+        return content == null ? null : ByteBuffer.wrap(content).asReadOnlyBuffer();
     }
 
     /**
      * Write content to file.
      *
-     * @param content gets written to the file. Any existing content is overwritten.
+     * @param content gets written to the file encoded as UTF-8. Any existing content is overwritten.
      */
     public void setContent(String content) {
+        replaceContent(content == null ? null : content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Write bytes to file.
+     *
+     * @param content gets copied to the file. Any existing content is overwritten.
+     */
+    public void setContentBytes(byte[] content) {
+        replaceContent(content == null ? null : content.clone());
+    }
+
+    /**
+     * Write the remaining bytes of a buffer to file. The position of the buffer is not changed.
+     *
+     * @param content gets copied to the file. Any existing content is overwritten.
+     */
+    public void setContentBuffer(ByteBuffer content) {
+        if (content == null) {
+            replaceContent(null);
+            return;
+        }
+        byte[] bytes = new byte[content.remaining()];
+        content.duplicate().get(bytes);
+        replaceContent(bytes);
+    }
+
+    // holds the monitor of the file, so that size changes reach the aggregates in order, see Directory
+    private synchronized void replaceContent(byte[] content) {
         this.content = content;
+        Directory.fileResized(this);
+    }
+
+    // sets name and parent for Directory.move and renameEntry, which hold the locks of the old and the new parent
+    void relink(String name, FSObject parent) {
+        this.name = name;
+        this.parent = parent;
+        this.cachedPath = null;
+    }
+
+    /**
+     * Creates a copy of the file, which is not added to parent. The content is shared, not copied;
+     * writing replaces the content instead of changing it, so writing to either file later does not affect the other.
+     *
+     * @param name   of the copy
+     * @param parent of the copy
+     * @return the copy
+     */
+    public File copy(String name, FSObject parent) {
+        File copy = new File(name, parent);
+        copy.content = this.content;
+        return copy;
     }
 
     /**
      * Calculate size of the file contents.
      *
-     * @return length of the content String
+     * @return length of the content in bytes
      */
     public int getSize() {
-        if (this.content == null) return 0;
-        return this.getContent().length();
+        byte[] content = this.content;
+        if (content == null) return 0;
+        return content.length;
     }
 
     /**
@@ -71,11 +157,28 @@ public class File implements FSObject {
      * E.g. for a file "f1.txt" inside a directory "d1" which in turn is contained in the root folder,
      * one would get "/d1/f1.txt"
      *
+     * The path is cached until the file, or a directory of its tree, is renamed or moved. A removed file keeps
+     * the path it had, so that walks that still see it (e.g. a concurrent find) can print it.
+     *
      * @return full path of the file.
      */
     @Override
     public String getPath() {
-        return this.parent.getPath() + this.name;
+        FSObject parent = this.parent;
+        String name = this.name;
+        if (parent == null) {
+            String removedPath = this.removedPath;
+            return removedPath != null ? removedPath : "/" + name;
+        }
+        if (!(parent instanceof Directory)) return parent.getPath() + name;
+        long generation = ((Directory) parent).getPathGeneration();
+        CachedString cached = this.cachedPath;
+        if (cached != null && cached.generation == generation) return cached.value;
+        String path = parent.getPath() + name;
+        this.cachedPath = new CachedString(path, generation);
+        // a rename or move that ran meanwhile may have dropped the cache before the stale path was stored
+        if (this.parent != parent || this.name != name) this.cachedPath = null;
+        return path;
     }
 
     /**
@@ -84,9 +187,12 @@ public class File implements FSObject {
      */
     @Override
     public void remove() {
-        if (this.parent instanceof Directory) {
-            ((Directory) this.parent).removeEntry(this);
+        FSObject parent = this.parent;
+        if (parent instanceof Directory) {
+            ((Directory) parent).removeEntry(this);
         }
+        if (parent != null) this.removedPath = getPath(); // before the parent is dropped, see getPath
         this.parent = null;
+        this.cachedPath = null;
     }
 }
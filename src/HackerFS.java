@@ -1,147 +1,321 @@
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
 
 public class HackerFS {
+    private static final int DENTRY_CACHE_SIZE = 1024;
+    // releases subtrees removed by removeRecursive
+    private static final Executor RECLAIMER = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "HackerFS reclaimer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     private final Directory root;
-    private Directory wd; // working directory
+    private final Session session; // used by the methods that are not called on a session
+    private final DentryCache dentryCache = new DentryCache(DENTRY_CACHE_SIZE); // resolved directory paths
 
     /**
      * The constructor.
      * <p>
      * Create a root folder with an empty String as name "" and null as parent.
-     * Set the working directory to the root folder.
+     * Set the working directory of the default session to the root folder.
      */
     public HackerFS() {
         this.root = new Directory("", null);
-        this.wd = this.root;
+        this.session = openSession();
     }
 
-    // ----------------------------------------------------
-    // Directory Functions
+    /**
+     * Opens a new session on this file system. All sessions share the tree; each has its own working directory,
+     * which starts at the root folder. Sessions can be used from different threads at the same time.
+     *
+     * @return the new session
+     */
+    public Session openSession() {
+        return new Session(this, this.root);
+    }
 
-    public void enterDirectory() {
-        this.wd = this.root;
+    // root getter
+    Directory getRoot() {
+        return this.root;
     }
 
+    // ----------------------------------------------------
+    // Namespace Functions, shared by all sessions
+
     /**
-     * Changes the current working directory to a subdirectory.
+     * Resolves a path to a file or directory. Absolute paths start at the root folder, all others at wd. "." and
+     * empty components are skipped, ".." moves to the parent (and stays at the root).
+     * Relative paths are walked from the wd object itself, so a session whose working directory was removed stays
+     * in the removed subtree (".." stops at its top) instead of resolving against the live tree.
+     * Resolved directories of absolute paths are cached by their path, so repeated accesses below the same
+     * directory skip the walk from the root.
      *
-     * @param name of the directory that we want to enter
-     * @throws NoSuchFileOrDirectory if the directory name does not exist in the current working directory
+     * @param path e.g. "f1.txt", "d1/f1.txt", "../d2" or "/d1/../d2/f2.txt"
+     * @param wd   the working directory of the session
+     * @return the file or directory
+     * @throws NoSuchFileOrDirectory if a component of the path does not exist or is not a directory
      */
-    public void enterDirectory(String name) throws NoSuchFileOrDirectory {
-        Optional<FSObject> existingFSObject = this.wd.contains(name);
-        if (existingFSObject.isEmpty()) throw new NoSuchFileOrDirectory("No such File or Directory");
-        this.wd = (Directory) existingFSObject.get();
+    FSObject resolve(String path, Directory wd) throws NoSuchFileOrDirectory {
+        if (path.indexOf('/') < 0 && !path.equals(".") && !path.equals("..") && !path.isEmpty()) {
+            Optional<FSObject> existingFSObject = wd.contains(path);
+            if (existingFSObject.isEmpty()) throw noSuchFileOrDirectory();
+            return existingFSObject.get();
+        }
+        if (!path.startsWith("/")) return resolveRelative(path, wd);
+        Deque<String> components = new ArrayDeque<>();
+        addComponents(components, path);
+        if (components.isEmpty()) return this.root;
+        String name = components.removeLast();
+        Optional<FSObject> existingFSObject = resolveDirectory(components).contains(name);
+        if (existingFSObject.isEmpty()) throw noSuchFileOrDirectory();
+        return existingFSObject.get();
     }
 
-    /**
-     * Leave directory, i.e. change working directory to parent directory.
-     * If the current working directory is root, do nothing.
-     */
-    public void leaveDirectory() {
-        if (this.wd.getParent() != null) {
-            this.wd = (Directory) this.wd.getParent();
+    // walks a relative path component by component from wd
+    private static FSObject resolveRelative(String path, Directory wd) throws NoSuchFileOrDirectory {
+        FSObject current = wd;
+        for (String component : path.split("/")) {
+            if (component.isEmpty() || component.equals(".")) continue;
+            if (!(current instanceof Directory)) throw noSuchFileOrDirectory();
+            if (component.equals("..")) {
+                FSObject parent = current.getParent();
+                if (parent != null) current = parent;
+            } else {
+                Optional<FSObject> next = ((Directory) current).contains(component);
+                if (next.isEmpty()) throw noSuchFileOrDirectory();
+                current = next.get();
+            }
         }
+        return current;
     }
 
     /**
-     * Return the name of the current working directory.
+     * Checks a name for a new or renamed entry. Paths are split at '/' and give "." and ".." a meaning of their own,
+     * so an entry with such a name could never be resolved.
      *
-     * @return name of the working directory.
+     * @param name the name of the entry
+     * @return name
+     * @throws IllegalArgumentException if name is empty, "." or "..", or contains '/'.
      */
-    public String getWorkingDirectory() {
-        return this.wd.getPath();
+    static String checkName(String name) {
+        if (name.isEmpty() || name.equals(".") || name.equals("..") || name.indexOf('/') >= 0) {
+            throw new IllegalArgumentException("Invalid name: \"" + name + "\"");
+        }
+        return name;
+    }
+
+    // lookups are expected to miss often (e.g. scripts probing for files), so skip the stack trace
+    static NoSuchFileOrDirectory noSuchFileOrDirectory() {
+        return new NoSuchFileOrDirectory("No such File or Directory", false);
+    }
+
+    // appends the components of path to an absolute, normalized list of components
+    private static void addComponents(Deque<String> components, String path) {
+        for (String component : path.split("/")) {
+            if (component.isEmpty() || component.equals(".")) continue;
+            if (component.equals("..")) components.pollLast();
+            else components.addLast(component);
+        }
+    }
+
+    private Directory resolveDirectory(Collection<String> components) throws NoSuchFileOrDirectory {
+        StringBuilder key = new StringBuilder("/");
+        for (String component : components) key.append(component).append('/');
+        String path = key.toString();
+        Directory cached = this.dentryCache.get(path);
+        // a cached directory that was renamed or moved since no longer has this path; a removed one keeps it
+        if (cached != null && cached.getPath().equals(path) && !cached.isRemoved()) return cached;
+        Directory directory = this.root;
+        for (String component : components) {
+            Optional<Directory> next = directory.containsDirectory(component);
+            if (next.isEmpty()) throw noSuchFileOrDirectory();
+            directory = next.get();
+        }
+        this.dentryCache.put(path, directory);
+        return directory;
     }
 
     /**
-     * Creates a new directory inside the current working directory.
-     *
-     * @param name of the new directory
-     * @throws AlreadyExists if a file or directory with the same name already exists in the current working directory.
+     * Detaches a directory removed by a session and releases its subtree in the background.
+     * See Directory.removeRecursive.
      */
-    public void createDirectory(String name) throws AlreadyExists {
-        Optional<FSObject> existingFSObject = this.wd.contains(name);
-        if (existingFSObject.isPresent()) throw new AlreadyExists("Directory already exists!");
-        Directory directory = new Directory(name, this.wd);
-        this.wd.getContents().add(directory);
+    void removeRecursive(Directory directory) {
+        forgetPaths(directory.getPath());
+        directory.removeRecursive(RECLAIMER);
     }
 
-    // ----------------------------------------------------
-    // File Functions
+    // drops the cached directories whose path starts with prefix
+    void forgetPaths(String prefix) {
+        this.dentryCache.removeIf(path -> path.startsWith(prefix));
+    }
 
     /**
-     * Create a new empty File inside the current working directory.
-     *
-     * @param name of the new file
-     * @throws AlreadyExists if a file or directory with the same name already exists in the current working directory.
+     * Index the names of all files and directories, so that find with search terms of at least
+     * three characters does not have to walk the tree. See Directory.enableNameIndex().
      */
+    public void enableNameIndex() {
+        this.root.enableNameIndex();
+    }
+
+    // ----------------------------------------------------
+    // Functions of the default session
+
+    // calls corresponding function of the default session
+    public void enterDirectory() {
+        this.session.enterDirectory();
+    }
+
+    // calls corresponding function of the default session
+    public void enterDirectory(String name) throws NoSuchFileOrDirectory {
+        this.session.enterDirectory(name);
+    }
+
+    // calls corresponding function of the default session
+    public void leaveDirectory() {
+        this.session.leaveDirectory();
+    }
+
+    // calls corresponding function of the default session
+    public String getWorkingDirectory() {
+        return this.session.getWorkingDirectory();
+    }
+
+    // calls corresponding function of the default session
+    public void createDirectory(String name) throws AlreadyExists {
+        this.session.createDirectory(name);
+    }
+
+    // calls corresponding function of the default session
+    public void createDirectory(String name, boolean concurrent) throws AlreadyExists {
+        this.session.createDirectory(name, concurrent);
+    }
+
+    // calls corresponding function of the default session
     public void createEmptyFile(String name) throws AlreadyExists {
-        Optional<FSObject> existingFSObject = this.wd.contains(name);
-        if (existingFSObject.isPresent())
-            throw new AlreadyExists("File or Directory already exists in the current working directory!");
-        File file = new File(name, this.wd);
-        this.wd.getContents().add(file);
+        this.session.createEmptyFile(name);
     }
 
-    /**
-     * Writes to a file inside the current working directory.
-     *
-     * @param name    of the file data should be written to.
-     * @param content that should be written to the file. Existing content is overwritten.
-     * @throws NoSuchFileOrDirectory if no file with name exists in the current working directory.
-     */
+    // calls corresponding function of the default session
+    public void createEntries(Collection<NewEntry> entries) throws AlreadyExists {
+        this.session.createEntries(entries);
+    }
+
+    // calls corresponding function of the default session
     public void writeFile(String name, String content) throws NoSuchFileOrDirectory {
-        Optional<FSObject> existingFSObject = this.wd.contains(name);
-        if (existingFSObject.isEmpty()) throw new NoSuchFileOrDirectory("No such File or Directory");
-        ((File) existingFSObject.get()).setContent(content);
+        this.session.writeFile(name, content);
     }
 
-    /**
-     * Read content from a file inside the current working directory.
-     *
-     * @param name of the file which should be read.
-     * @return content of the file
-     * @throws NoSuchFileOrDirectory if no file with name exists in the current working directory.
-     */
+    // calls corresponding function of the default session
+    public void writeFileBytes(String name, byte[] content) throws NoSuchFileOrDirectory {
+        this.session.writeFileBytes(name, content);
+    }
+
+    // calls corresponding function of the default session
     public String readFile(String name) throws NoSuchFileOrDirectory {
-        Optional<FSObject> existingFSObject = this.wd.contains(name);
-        if (existingFSObject.isEmpty()) throw new NoSuchFileOrDirectory("No such File or Directory");
-        return ((File) existingFSObject.get()).getContent();
+        return this.session.readFile(name);
     }
 
-    // ----------------------------------------------------
-    // Functions involving both Files and Directories
+    // calls corresponding function of the default session
+    public byte[] readFileBytes(String name) throws NoSuchFileOrDirectory {
+        return this.session.readFileBytes(name);
+    }
 
-    /**
-     * Remove a file or an empty directory inside the current working directory.
-     *
-     * @param name of the file or directory
-     * @throws NoSuchFileOrDirectory if no file or directory exists
-     * @throws NotEmpty              in an attempt to remove a non-empty directory
-     */
+    // calls corresponding function of the default session
     public void remove(String name) throws NoSuchFileOrDirectory, NotEmpty {
-        Optional<FSObject> existingFSObject = this.wd.contains(name);
-        if (existingFSObject.isEmpty()) throw new NoSuchFileOrDirectory("No such File or Directory");
-        existingFSObject.get().remove();
+        this.session.remove(name);
+    }
+
+    // calls corresponding function of the default session
+    public void removeRecursive(String name) throws NoSuchFileOrDirectory {
+        this.session.removeRecursive(name);
+    }
+
+    // calls corresponding function of the default session
+    public void move(String source, String target) throws NoSuchFileOrDirectory, AlreadyExists {
+        this.session.move(source, target);
+    }
+
+    // calls corresponding function of the default session
+    public void copy(String source, String target) throws NoSuchFileOrDirectory, AlreadyExists {
+        this.session.copy(source, target);
+    }
+
+    // calls corresponding function of the default session
+    public String diskUsage() {
+        return this.session.diskUsage();
+    }
+
+    // calls corresponding function of the default session
+    public String diskUsage(String path) throws NoSuchFileOrDirectory {
+        return this.session.diskUsage(path);
+    }
+
+    // calls corresponding function of the default session
+    public FSObject resolve(String path) throws NoSuchFileOrDirectory {
+        return this.session.resolve(path);
+    }
+
+    // calls corresponding function of the default session
+    public void enableSortedIndex() {
+        this.session.enableSortedIndex();
     }
 
-    // calls corresponding function of Directory class
+    // calls corresponding function of the default session
+    public String listPrefix(String prefix) {
+        return this.session.listPrefix(prefix);
+    }
+
+    // calls corresponding function of the default session
     public String list() {
-        return this.wd.list();
+        return this.session.list();
     }
 
-    // calls corresponding function of Directory class
+    // calls corresponding function of the default session
+    public void list(Appendable out) throws IOException {
+        this.session.list(out);
+    }
+
+    // calls corresponding function of the default session
     public String listLong() {
-        return this.wd.listLong();
+        return this.session.listLong();
+    }
+
+    // calls corresponding function of the default session
+    public void listLong(Appendable out) throws IOException {
+        this.session.listLong(out);
     }
 
-    // calls corresponding function of Directory class
+    // calls corresponding function of the default session
     public String find() {
-        return this.wd.find();
+        return this.session.find();
     }
 
-    // calls corresponding function of Directory class
+    // calls corresponding function of the default session
+    public void find(Appendable out) throws IOException {
+        this.session.find(out);
+    }
+
+    // calls corresponding function of the default session
     public String find(String name) {
-        return this.wd.find(name);
+        return this.session.find(name);
+    }
+
+    // calls corresponding function of the default session
+    public void find(String name, Appendable out) throws IOException {
+        this.session.find(name, out);
+    }
+
+    // calls corresponding function of the default session
+    public String findParallel(String name) {
+        return this.session.findParallel(name);
+    }
+
+    // calls corresponding function of the default session
+    public Stream<FSObject> walk() {
+        return this.session.walk();
     }
 }
@@ -1,6 +1,12 @@
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class HackerFSTest {
@@ -56,6 +62,23 @@ public class HackerFSTest {
         assertThrows(NoSuchFileOrDirectory.class, () -> fs.readFile("f2.txt"));
     }
 
+    @Test
+    public void testInvalidNames() throws AlreadyExists, NoSuchFileOrDirectory {
+        fs.createDirectory("d1");
+        FSObject d1 = fs.resolve("d1");
+        for (String name : new String[]{"", ".", "..", "/", "a/b"}) {
+            assertThrows(IllegalArgumentException.class, () -> fs.createDirectory(name));
+            assertThrows(IllegalArgumentException.class, () -> fs.createEmptyFile(name));
+            assertThrows(IllegalArgumentException.class,
+                    () -> fs.createEntries(Arrays.asList(NewEntry.file("ok", null), NewEntry.directory(name))));
+            assertThrows(IllegalArgumentException.class, () -> d1.setName(name));
+        }
+        assertEquals("d1\n", fs.list());
+        fs.createEmptyFile("...");
+        d1.setName(".d1");
+        assertEquals("/.d1/", fs.find(".d").trim());
+    }
+
     @Test
     public void testMixed() throws AlreadyExists, NoSuchFileOrDirectory, NotEmpty {
         // remove, list, listLong, find
@@ -96,4 +119,336 @@ public class HackerFSTest {
         fs.leaveDirectory();
         assertThrows(NotEmpty.class, () -> fs.remove("d1"));
     }
+
+    @Test
+    public void testPaths() throws AlreadyExists, NoSuchFileOrDirectory, NotEmpty {
+        fs.createDirectory("a");
+        fs.enterDirectory("a");
+        fs.createDirectory("b");
+        fs.enterDirectory("b");
+        fs.createEmptyFile("f.txt");
+        fs.enterDirectory();
+        fs.writeFile("/a/b/f.txt", "Hello");
+        assertEquals("Hello", fs.readFile("a/b/f.txt"));
+        assertEquals("Hello", fs.readFile("/a/./b/../b//f.txt"));
+        fs.enterDirectory("/a/b");
+        assertEquals("/a/b/", fs.getWorkingDirectory());
+        assertEquals("Hello", fs.readFile("../../a/b/f.txt"));
+        fs.enterDirectory("../..");
+        assertEquals("/", fs.getWorkingDirectory());
+        assertThrows(NoSuchFileOrDirectory.class, () -> fs.readFile("/a/c/f.txt"));
+        assertThrows(NoSuchFileOrDirectory.class, () -> fs.enterDirectory("/a/b/f.txt"));
+        assertThrows(NoSuchFileOrDirectory.class, () -> fs.readFile("/a/b"));
+        fs.remove("/a/b/f.txt");
+        assertThrows(NoSuchFileOrDirectory.class, () -> fs.readFile("/a/b/f.txt"));
+    }
+
+    @Test
+    public void testPathsAfterRename() throws AlreadyExists, NoSuchFileOrDirectory {
+        fs.createDirectory("a");
+        fs.enterDirectory("a");
+        fs.createDirectory("b");
+        fs.enterDirectory("b");
+        fs.createEmptyFile("f.txt");
+        fs.enterDirectory();
+        assertNull(fs.readFile("/a/b/f.txt"));
+        fs.resolve("/a/b").setName("c");
+        assertThrows(NoSuchFileOrDirectory.class, () -> fs.readFile("/a/b/f.txt"));
+        assertNull(fs.readFile("/a/c/f.txt"));
+    }
+
+    @Test
+    public void testDentryCacheEvictsLeastRecentlyUsed() {
+        DentryCache cache = new DentryCache(4);
+        Directory used = new Directory("used", null);
+        cache.put("/used/", used);
+        for (int i = 0; i < 10; i++) {
+            cache.put("/d" + i + "/", new Directory("d" + i, null));
+            assertEquals(used, cache.get("/used/"));
+        }
+        assertEquals(4, cache.size());
+        assertNull(cache.get("/d0/"));
+        cache.removeIf(path -> path.startsWith("/used/"));
+        assertNull(cache.get("/used/"));
+    }
+
+    @Test
+    public void testNameIndex() throws AlreadyExists, NoSuchFileOrDirectory, NotEmpty {
+        fs.createDirectory("logs");
+        fs.enterDirectory("logs");
+        fs.createEmptyFile("app-2026.log");
+        fs.createEmptyFile("db-2026.log");
+        fs.enterDirectory();
+        fs.enableNameIndex();
+        fs.createEmptyFile("notes-2026.txt");
+        assertEquals("/logs/app-2026.log\n/logs/db-2026.log\n/notes-2026.txt\n", fs.find("2026"));
+        fs.resolve("/logs/db-2026.log").setName("db-2027.log");
+        assertEquals("/logs/db-2027.log\n", fs.find("2027"));
+        fs.remove("/logs/app-2026.log");
+        assertEquals("/notes-2026.txt\n", fs.find("2026"));
+        fs.enterDirectory("logs");
+        assertEquals("", fs.find("2026"));
+        assertEquals("/logs/db-2027.log", fs.find("db").trim());
+        fs.enterDirectory();
+        fs.createEmptyFile("0-2026.txt");
+        assertEquals("/notes-2026.txt\n/0-2026.txt\n", fs.find("2026"));
+        assertEquals(fs.find("2026"), fs.findParallel("2026"));
+    }
+
+    @Test
+    public void testDiskUsage() throws AlreadyExists, NoSuchFileOrDirectory {
+        fs.createDirectory("d1");
+        fs.enterDirectory("d1");
+        fs.createEmptyFile("f1.txt");
+        fs.writeFile("f1.txt", "Hello");
+        fs.enterDirectory();
+        fs.createEmptyFile("f2.txt");
+        fs.writeFile("f2.txt", "World!");
+        assertEquals("11 bytes in 2 files and 1 directories, largest file 6 bytes", fs.diskUsage());
+        assertEquals("5 bytes in 1 files and 0 directories, largest file 5 bytes", fs.diskUsage("d1"));
+        assertThrows(NoSuchFileOrDirectory.class, () -> fs.diskUsage("f2.txt"));
+    }
+
+    @Test
+    public void testCreateEntries() throws AlreadyExists, NoSuchFileOrDirectory {
+        fs.createEmptyFile("taken.txt");
+        List<NewEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 100; i++) entries.add(NewEntry.file("f" + i + ".txt", "content " + i));
+        entries.add(NewEntry.directory("d1"));
+        entries.add(NewEntry.file("taken.txt", "other"));
+        entries.add(NewEntry.directory("f7.txt"));
+        AlreadyExists e = assertThrows(AlreadyExists.class, () -> fs.createEntries(entries));
+        assertEquals(2, e.getSuppressed().length);
+        assertNull(fs.readFile("taken.txt"));
+        assertEquals("content 7", fs.readFile("f7.txt"));
+        assertEquals("content 99", fs.readFile("f99.txt"));
+        fs.enterDirectory("d1");
+        assertEquals("/d1/", fs.getWorkingDirectory());
+        fs.enterDirectory();
+        assertEquals("990 bytes in 101 files and 1 directories, largest file 10 bytes", fs.diskUsage());
+    }
+
+    @Test
+    public void testRemoveRecursive() throws AlreadyExists, NoSuchFileOrDirectory {
+        fs.createDirectory("d1");
+        fs.enterDirectory("d1");
+        fs.createDirectory("d2");
+        fs.enterDirectory("d2");
+        fs.createEmptyFile("f1.txt");
+        fs.writeFile("/d1/d2/f1.txt", "Hello");
+        fs.removeRecursive("/d1");
+        assertEquals("/", fs.getWorkingDirectory());
+        assertThrows(NoSuchFileOrDirectory.class, () -> fs.readFile("/d1/d2/f1.txt"));
+        assertEquals("0 bytes in 0 files and 0 directories, largest file 0 bytes", fs.diskUsage());
+        fs.createDirectory("d1");
+        fs.createEmptyFile("f2.txt");
+        fs.removeRecursive("f2.txt");
+        fs.removeRecursive("/");
+        assertEquals("", fs.find());
+        assertThrows(NoSuchFileOrDirectory.class, () -> fs.removeRecursive("d1"));
+    }
+
+    @Test
+    public void testMove() throws AlreadyExists, NoSuchFileOrDirectory {
+        fs.createDirectory("d1");
+        fs.createDirectory("d2");
+        fs.enterDirectory("d1");
+        fs.createDirectory("d3");
+        fs.createEmptyFile("f1.txt");
+        fs.writeFile("f1.txt", "Hello");
+        fs.enterDirectory("d3");
+        fs.enterDirectory();
+        assertEquals("5 bytes in 1 files and 1 directories, largest file 5 bytes", fs.diskUsage("/d1"));
+
+        fs.move("/d1/f1.txt", "/d2");
+        assertEquals("Hello", fs.readFile("/d2/f1.txt"));
+        fs.move("/d2/f1.txt", "/d2/f2.txt");
+        assertEquals("Hello", fs.readFile("/d2/f2.txt"));
+        assertThrows(NoSuchFileOrDirectory.class, () -> fs.readFile("/d2/f1.txt"));
+        fs.move("d1", "d2/d1new");
+        assertEquals("/d2/\n/d2/f2.txt\n/d2/d1new/\n/d2/d1new/d3/\n", fs.find());
+        assertThrows(NoSuchFileOrDirectory.class, () -> fs.enterDirectory("/d1/d3"));
+        fs.enterDirectory("/d2/d1new/d3");
+        assertEquals("/d2/d1new/d3/", fs.getWorkingDirectory());
+        assertEquals("5 bytes in 1 files and 2 directories, largest file 5 bytes", fs.diskUsage("/d2"));
+        assertEquals("5 bytes in 1 files and 3 directories, largest file 5 bytes", fs.diskUsage("/"));
+
+        assertThrows(IllegalArgumentException.class, () -> fs.move("/d2", "/d2/d1new"));
+        assertThrows(IllegalArgumentException.class, () -> fs.move("/d2", "/d2/d1new/d3/d2"));
+        assertThrows(IllegalArgumentException.class, () -> fs.move("/", "/d2"));
+        assertThrows(AlreadyExists.class, () -> fs.move("/d2/d1new", "/d2/f2.txt"));
+        assertThrows(NoSuchFileOrDirectory.class, () -> fs.move("/d2/f2.txt", "/nope/f2.txt"));
+    }
+
+    @Test
+    public void testCopy() throws AlreadyExists, NoSuchFileOrDirectory {
+        fs.createDirectory("d1");
+        fs.enterDirectory("d1");
+        fs.createDirectory("d2");
+        fs.createEmptyFile("f1.txt");
+        fs.writeFile("f1.txt", "Hello");
+        fs.enterDirectory();
+        fs.copy("d1", "d1copy");
+        fs.copy("/d1/f1.txt", "/d1/d2");
+        fs.copy("d1", "d1/d2/d1copy");
+        fs.writeFile("/d1copy/f1.txt", "World!");
+        assertEquals("Hello", fs.readFile("/d1/f1.txt"));
+        assertEquals("Hello", fs.readFile("/d1/d2/f1.txt"));
+        assertEquals("/d1/\n/d1/d2/\n/d1/d2/f1.txt\n/d1/d2/d1copy/\n/d1/d2/d1copy/d2/\n/d1/d2/d1copy/d2/f1.txt\n/d1/d2/d1copy/f1.txt\n"
+                + "/d1/f1.txt\n/d1copy/\n/d1copy/d2/\n/d1copy/f1.txt\n", fs.find());
+        assertEquals("26 bytes in 5 files and 6 directories, largest file 6 bytes", fs.diskUsage());
+        assertThrows(AlreadyExists.class, () -> fs.copy("d1", "d1copy/f1.txt"));
+        assertThrows(AlreadyExists.class, () -> fs.copy("/d1/f1.txt", "/d1"));
+    }
+
+    @Test
+    public void testSessions() throws Exception {
+        fs.createDirectory("d1");
+        fs.createDirectory("d2");
+        Session s1 = fs.openSession();
+        Session s2 = fs.openSession();
+        s1.enterDirectory("d1");
+        s2.enterDirectory("d2");
+        s1.createEmptyFile("f.txt");
+        s2.createEmptyFile("f.txt");
+        s1.writeFile("f.txt", "one");
+        s2.writeFile("f.txt", "two");
+        assertEquals("/", fs.getWorkingDirectory());
+        assertEquals("/d1/", s1.getWorkingDirectory());
+        assertEquals("one", s2.readFile("../d1/f.txt"));
+        assertEquals("two", fs.readFile("d2/f.txt"));
+
+        // a session's own removal moves it out, other sessions stay in the removed directory
+        Session s3 = fs.openSession();
+        s3.enterDirectory("/d1");
+        s1.removeRecursive("/d1");
+        assertEquals("/", s1.getWorkingDirectory());
+        assertThrows(NoSuchFileOrDirectory.class, () -> s3.readFile("/d1/f.txt"));
+        s3.enterDirectory();
+        assertEquals("/d2/\n/d2/f.txt\n", s3.find());
+        assertEquals("/", s3.getWorkingDirectory());
+
+        // each thread works in its own directory through its own session
+        int threads = 8, files = 200;
+        List<Thread> workers = new ArrayList<>();
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        for (int t = 0; t < threads; t++) {
+            String name = "t" + t;
+            workers.add(new Thread(() -> {
+                Session session = fs.openSession();
+                try {
+                    session.createDirectory(name);
+                    session.enterDirectory(name);
+                    for (int i = 0; i < files; i++) session.createEmptyFile("f" + i);
+                    assertEquals("/" + name + "/", session.getWorkingDirectory());
+                    session.leaveDirectory();
+                    session.removeRecursive(name + "/f0");
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            }));
+        }
+        for (Thread worker : workers) worker.start();
+        for (Thread worker : workers) worker.join();
+        assertEquals(List.of(), failures);
+        assertEquals("3 bytes in " + (threads * (files - 1) + 1) + " files and " + (threads + 1) + " directories, "
+                + "largest file 3 bytes", fs.diskUsage());
+    }
+
+    @Test
+    public void testFindWhileRemoving() throws Exception {
+        // find and findParallel print entries they saw before a concurrent rm detached them
+        fs.enableNameIndex();
+        fs.createDirectory("d");
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        long end = System.nanoTime() + 1_000_000_000L;
+        Thread writer = new Thread(() -> {
+            Session session = fs.openSession();
+            try {
+                session.enterDirectory("d");
+                for (int round = 0; System.nanoTime() < end; round++) {
+                    for (int i = 0; i < 2_000; i++) session.createEmptyFile("file" + i);
+                    session.createDirectory("sub");
+                    session.enterDirectory("sub");
+                    session.createEmptyFile("x");
+                    session.leaveDirectory();
+                    for (int i = 0; i < 2_000; i++) session.remove("file" + i);
+                    session.removeRecursive(round % 2 == 0 ? "sub" : "sub/x");
+                    if (round % 2 == 1) session.remove("sub");
+                }
+            } catch (Throwable e) {
+                failures.add(e);
+            }
+        });
+        Thread reader = new Thread(() -> {
+            Session session = fs.openSession();
+            while (writer.isAlive()) {
+                try {
+                    session.find("file");
+                    session.findParallel("file1");
+                    session.find("");
+                } catch (Throwable e) {
+                    failures.add(e);
+                    return;
+                }
+            }
+        });
+        writer.start();
+        reader.start();
+        writer.join();
+        reader.join();
+        assertEquals(List.of(), failures);
+        assertEquals("/d/\n", fs.find());
+    }
+
+    @Test
+    public void testSessionStaysInRemovedDirectory() throws Exception {
+        fs.createDirectory("a");
+        fs.enterDirectory("a");
+        fs.createDirectory("b");
+        fs.enterDirectory();
+        fs.createDirectory("c");
+        fs.enterDirectory("c");
+        fs.createEmptyFile("live.txt");
+        fs.writeFile("live.txt", "live");
+        fs.enterDirectory();
+        Session inB = fs.openSession();
+        inB.enterDirectory("a/b");
+        Session inA = fs.openSession();
+        inA.enterDirectory("a");
+
+        fs.removeRecursive("/a");
+        // relative paths stay in the removed subtree and never reach the live /c
+        assertEquals("/a/b/ (deleted)", inB.getWorkingDirectory());
+        assertThrows(NoSuchFileOrDirectory.class, () -> inB.readFile("c/live.txt"));
+        assertThrows(NoSuchFileOrDirectory.class, () -> inB.readFile("../../c/live.txt"));
+        assertThrows(NoSuchFileOrDirectory.class, () -> inB.removeRecursive("../../c"));
+        assertThrows(IllegalStateException.class, () -> inA.createEmptyFile("new.txt"));
+        inB.leaveDirectory();
+        inB.leaveDirectory();
+        assertEquals("/a/ (deleted)", inB.getWorkingDirectory()); // stays at the top of the removed subtree
+        assertEquals("live", fs.readFile("/c/live.txt"));
+        assertEquals("live", inB.readFile("/c/live.txt"));
+        inB.enterDirectory("/c");
+        assertEquals("/c/", inB.getWorkingDirectory());
+        assertEquals("live", inB.readFile("live.txt"));
+    }
+
+    @Test
+    public void testByteContent() throws AlreadyExists, NoSuchFileOrDirectory {
+        fs.createEmptyFile("f1.bin");
+        assertNull(fs.readFileBytes("f1.bin"));
+        byte[] binary = new byte[256];
+        for (int i = 0; i < binary.length; i++) binary[i] = (byte) i;
+        fs.writeFileBytes("f1.bin", binary);
+        assertArrayEquals(binary, fs.readFileBytes("/f1.bin"));
+        fs.createEmptyFile("f2.txt");
+        fs.writeFile("f2.txt", "\u20ac");
+        assertArrayEquals(new byte[]{(byte) 0xe2, (byte) 0x82, (byte) 0xac}, fs.readFileBytes("f2.txt"));
+        assertEquals("259 bytes in 2 files and 0 directories, largest file 256 bytes", fs.diskUsage());
+        assertEquals("f f1.bin (size 256)\nf f2.txt (size 3)\n",
+                Arrays.stream(fs.listLong().split("\n")).sorted().collect(Collectors.joining("\n", "", "\n")));
+        fs.writeFile("f2.txt", null);
+        assertNull(fs.readFile("f2.txt"));
+    }
 }
@@ -0,0 +1,126 @@
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Load generator for HackerServer. Opens a number of connections at once, each of which creates its own
+ * directory and then sends a fixed mix of commands (mkdir, ls, du, pwd, rm) one at a time, waiting for the prompt
+ * after each. Reports the throughput and the latency percentiles over all commands of all connections.
+ */
+public class HackerLoad {
+    private static final String[] COMMANDS = {"mkdir d%d", "ls", "du", "pwd", "rm d%d"};
+
+    private final int port;
+    private final int clients;
+    private final int commands;
+
+    /**
+     * The constructor
+     *
+     * @param port     of the HackerServer on the loopback address
+     * @param clients  number of concurrent connections
+     * @param commands number of commands each connection sends
+     * @throws IllegalArgumentException if clients or commands is less than 1
+     */
+    public HackerLoad(int port, int clients, int commands) {
+        if (clients < 1) throw new IllegalArgumentException("clients must be at least 1");
+        if (commands < 1) throw new IllegalArgumentException("commands must be at least 1");
+        this.port = port;
+        this.clients = clients;
+        this.commands = commands;
+    }
+
+    /**
+     * Runs the load and prints a summary.
+     *
+     * @param out receives the summary
+     * @throws IOException          if a connection fails
+     * @throws InterruptedException if interrupted while waiting for the connections
+     */
+    public void run(PrintStream out) throws IOException, InterruptedException {
+        long[][] latencies = new long[this.clients][];
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> threads = new ArrayList<>();
+        for (int c = 0; c < this.clients; c++) {
+            int client = c;
+            threads.add(new Thread(() -> {
+                try {
+                    latencies[client] = runClient(client);
+                } catch (IOException | RuntimeException e) {
+                    failures.add(e);
+                }
+            }));
+        }
+        long start = System.nanoTime();
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) thread.join();
+        long elapsed = System.nanoTime() - start;
+        if (!failures.isEmpty()) throw new IOException(failures.size() + " connections failed", failures.get(0));
+
+        long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+        out.println(String.format(Locale.ROOT, "%d clients, %d commands in %.2f s, %.0f commands/s",
+                this.clients, all.length, elapsed / 1e9, all.length / (elapsed / 1e9)));
+        out.println(String.format(Locale.ROOT, "latency us: p50 %.1f  p90 %.1f  p99 %.1f  max %.1f",
+                percentile(all, 50) / 1e3, percentile(all, 90) / 1e3, percentile(all, 99) / 1e3,
+                all[all.length - 1] / 1e3));
+    }
+
+    // nearest-rank percentile of sorted values
+    static long percentile(long[] sorted, double p) {
+        int rank = (int) Math.ceil(p / 100 * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    /**
+     * @return the latency of every command in nanoseconds
+     */
+    private long[] runClient(int client) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), this.port)) {
+            socket.setTcpNoDelay(true);
+            Reader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+            readResponse(in); // greeting
+            String directory = "load-" + client;
+            send(in, out, "mkdir " + directory);
+            send(in, out, "cd " + directory);
+            long[] latencies = new long[this.commands];
+            for (int i = 0; i < this.commands; i++) {
+                String command = String.format(Locale.ROOT, COMMANDS[i % COMMANDS.length], i / COMMANDS.length);
+                long start = System.nanoTime();
+                send(in, out, command);
+                latencies[i] = System.nanoTime() - start;
+            }
+            send(in, out, "cd ..");
+            send(in, out, "rm -r " + directory);
+            out.write("exit\n");
+            out.flush();
+            return latencies;
+        }
+    }
+
+    private static String send(Reader in, Writer out, String command) throws IOException {
+        out.write(command);
+        out.write('\n');
+        out.flush();
+        return readResponse(in);
+    }
+
+    /**
+     * @return the output of a command, up to the prompt at the start of a line
+     */
+    static String readResponse(Reader in) throws IOException {
+        StringBuilder response = new StringBuilder();
+        while (true) {
+            int c = in.read();
+            if (c < 0) throw new EOFException("connection closed");
+            response.append((char) c);
+            int length = response.length();
+            if (length >= 2 && response.charAt(length - 2) == '$' && response.charAt(length - 1) == ' '
+                    && (length == 2 || response.charAt(length - 3) == '\n')) {
+                return response.substring(0, length - 2);
+            }
+        }
+    }
+}
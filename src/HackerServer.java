@@ -0,0 +1,97 @@
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves the HackerShell on a loopback TCP port. Every connection gets its own session on the shared HackerFS
+ * (see HackerFS.openSession()) and its own thread, which runs the shell until the client sends "exit" or closes
+ * the connection. On a runtime with virtual threads each connection runs on a virtual thread, so thousands of
+ * connections cost little memory; otherwise a cached pool of platform threads is used.
+ */
+public class HackerServer implements Closeable {
+    private final HackerFS fs;
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections = newConnectionExecutor();
+    private final Set<Socket> open = ConcurrentHashMap.newKeySet(); // closed by close()
+
+    /**
+     * The constructor. Binds the server socket, connections are accepted by serve().
+     *
+     * @param fs   the file system shared by all connections
+     * @param port on the loopback address, or 0 for any free port
+     * @throws IOException if the port cannot be bound
+     */
+    public HackerServer(HackerFS fs, int port) throws IOException {
+        this.fs = fs;
+        this.serverSocket = new ServerSocket(port, 1024, InetAddress.getLoopbackAddress());
+    }
+
+    // virtual threads need a newer runtime than the one we compile for, so they are looked up reflectively
+    private static ExecutorService newConnectionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, "HackerShell connection");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    // port getter
+    public int getPort() {
+        return this.serverSocket.getLocalPort();
+    }
+
+    /**
+     * Accepts connections until the server is closed.
+     *
+     * @throws IOException if accepting a connection fails for another reason than close()
+     */
+    public void serve() throws IOException {
+        while (true) {
+            Socket socket;
+            try {
+                socket = this.serverSocket.accept();
+            } catch (SocketException e) {
+                if (this.serverSocket.isClosed()) return;
+                throw e;
+            }
+            this.open.add(socket);
+            this.connections.execute(() -> handle(socket));
+        }
+    }
+
+    private void handle(Socket socket) {
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            PrintStream out = new PrintStream(new BufferedOutputStream(socket.getOutputStream()), false, "UTF-8");
+            new HackerShell(this.fs.openSession(), in, out).run();
+        } catch (IOException ignored) {
+            // the client went away
+        } finally {
+            this.open.remove(socket);
+        }
+    }
+
+    /**
+     * Stops accepting connections and closes the open ones.
+     *
+     * @throws IOException if closing the server socket fails
+     */
+    @Override
+    public void close() throws IOException {
+        this.serverSocket.close();
+        for (Socket socket : this.open) socket.close();
+        this.connections.shutdown();
+    }
+}
@@ -0,0 +1,178 @@
+import java.io.*;
+import java.util.*;
+
+/**
+ * The command line of HackerFS: reads commands line by line and runs them in a session, until "exit" or the
+ * end of the input. Used by Main for the console and by HackerServer for every connection.
+ * <p>
+ * After the greeting and after the output of every command the prompt "$ " is written and the output is
+ * flushed, so a client knows when a command is done.
+ */
+public class HackerShell {
+    static final String PROMPT = "$ ";
+
+    private final Session session;
+    private final BufferedReader in;
+    private final PrintStream out;
+
+    /**
+     * The constructor
+     *
+     * @param session the commands are run in
+     * @param in      the commands, one per line
+     * @param out     receives the output of the commands
+     */
+    public HackerShell(Session session, BufferedReader in, PrintStream out) {
+        this.session = session;
+        this.in = in;
+        this.out = out;
+    }
+
+    /**
+     * Runs commands until "exit" or the end of the input.
+     *
+     * @throws IOException if reading the commands fails
+     */
+    public void run() throws IOException {
+        this.out.println("HackerShell for HackerFS");
+        boolean loop = true;
+        while (loop) {
+            this.out.print(PROMPT);
+            this.out.flush();
+            String input = this.in.readLine();
+            if (input == null) break;
+            loop = execute(input.trim());
+        }
+        this.out.flush();
+    }
+
+    /**
+     * Runs a single command.
+     *
+     * @param input the command line, e.g. "mkdir d1 d2"
+     * @return false if the command was "exit"
+     * @throws IOException if writing the output fails
+     */
+    public boolean execute(String input) throws IOException {
+        String[] cmdargs = input.split(" ");
+        String cmd = cmdargs[0];
+        boolean hasArgs = cmdargs.length > 1;
+        List<String> onlyArgs = new ArrayList<>(Arrays.asList(cmdargs));
+        if (hasArgs) onlyArgs.remove(0);
+        switch (cmd.toLowerCase()) {
+            case "":
+                break;
+            case "exit":
+                return false;
+            case "ls":
+                if (hasArgs) this.out.println("ls does not support operands");
+                else this.session.list(this.out);
+                break;
+            case "ll":
+                if (hasArgs) this.out.println("ll does not support operands");
+                else this.session.listLong(this.out);
+                break;
+            case "du":
+                if (!hasArgs) this.out.println(this.session.diskUsage());
+                else {
+                    for (String d : onlyArgs) {
+                        try {
+                            this.out.println(d + ": " + this.session.diskUsage(d));
+                        } catch (NoSuchFileOrDirectory ex) {
+                            this.out.println("NoSuchFileOrDirectory: " + ex.getMessage());
+                        }
+                    }
+                }
+                break;
+            case "pwd":
+                this.out.println(this.session.getWorkingDirectory());
+                break;
+            case "mkdir":
+                if (!hasArgs) this.out.println("missing operand");
+                else {
+                    for (String d : onlyArgs) {
+                        try {
+                            this.session.createDirectory(d);
+                        } catch (AlreadyExists alreadyExists) {
+                            this.out.println("AlreadyExists: " + alreadyExists.getMessage());
+                        } catch (IllegalStateException | IllegalArgumentException ex) {
+                            this.out.println(ex.getClass().getName() + ": " + ex.getMessage());
+                        }
+                    }
+                }
+                break;
+            case "rm":
+                boolean recursive = hasArgs && onlyArgs.get(0).equals("-r");
+                if (recursive) onlyArgs.remove(0);
+                if (!hasArgs || onlyArgs.isEmpty()) this.out.println("missing operand");
+                else {
+                    for (String d : onlyArgs) {
+                        try {
+                            if (recursive) this.session.removeRecursive(d);
+                            else this.session.remove(d);
+                        } catch (NoSuchFileOrDirectory | NotEmpty ex) {
+                            this.out.println(ex.getClass().getName() + ": " + ex.getMessage());
+                        }
+                    }
+                }
+                break;
+            case "mv":
+                if (onlyArgs.size() != 2 || !hasArgs) this.out.println("usage: mv source target");
+                else {
+                    try {
+                        this.session.move(onlyArgs.get(0), onlyArgs.get(1));
+                    } catch (NoSuchFileOrDirectory | AlreadyExists | IllegalArgumentException ex) {
+                        this.out.println(ex.getClass().getName() + ": " + ex.getMessage());
+                    }
+                }
+                break;
+            case "cp":
+                boolean copyDirectories = hasArgs && onlyArgs.get(0).equals("-r");
+                if (copyDirectories) onlyArgs.remove(0);
+                if (onlyArgs.size() != 2 || !hasArgs) this.out.println("usage: cp [-r] source target");
+                else {
+                    try {
+                        if (!copyDirectories && this.session.resolve(onlyArgs.get(0)) instanceof Directory) {
+                            this.out.println("omitting directory " + onlyArgs.get(0));
+                        } else {
+                            this.session.copy(onlyArgs.get(0), onlyArgs.get(1));
+                        }
+                    } catch (NoSuchFileOrDirectory | AlreadyExists | IllegalStateException ex) {
+                        this.out.println(ex.getClass().getName() + ": " + ex.getMessage());
+                    }
+                }
+                break;
+            case "cd":
+                if (cmdargs.length == 1) this.session.enterDirectory();
+                else if (cmdargs[1].equals(".."))
+                    this.session.leaveDirectory();
+                else {
+                    try {
+                        this.session.enterDirectory(cmdargs[1]);
+                    } catch (NoSuchFileOrDirectory noSuchFileOrDirectory) {
+                        this.out.println("NoSuchFileOrDirectory: " + noSuchFileOrDirectory.getMessage());
+                    }
+                }
+                break;
+            case "cat":
+                if (!hasArgs) this.out.println("missing operand");
+                else {
+                    for (String f : onlyArgs) {
+                        try {
+                            this.out.println(this.session.readFile(f));
+                        } catch (NoSuchFileOrDirectory ex) {
+                            this.out.println("NoSuchFileOrDirectory: " + ex.getMessage());
+                        }
+                    }
+                }
+                break;
+            case "find":
+                if (!hasArgs) this.session.find(this.out);
+                else this.session.find(cmdargs[1], this.out);
+                break;
+            default:
+                this.out.println("Unknown command: " + cmd);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,72 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HackerShellTest {
+    private static String run(HackerFS fs, String input) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(bytes, true, "UTF-8");
+        new HackerShell(fs.openSession(), new BufferedReader(new StringReader(input)), out).run();
+        return bytes.toString("UTF-8");
+    }
+
+    @Test
+    public void testShell() throws IOException {
+        HackerFS fs = new HackerFS();
+        assertEquals("HackerShell for HackerFS\n$ $ $ $ d2\n$ /d1/\n$ AlreadyExists: Directory already exists!\n$ ",
+                run(fs, "mkdir d1\ncd d1\nmkdir d2\nls\npwd\nmkdir d2\nexit\nls\n"));
+        // every shell has its own working directory
+        assertEquals("HackerShell for HackerFS\n$ /\n$ ", run(fs, "pwd"));
+        assertEquals("/", fs.getWorkingDirectory());
+    }
+
+    @Test
+    public void testServer() throws Exception {
+        HackerFS fs = new HackerFS();
+        HackerServer server = new HackerServer(fs, 0);
+        Thread serving = new Thread(() -> {
+            try {
+                server.serve();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        serving.start();
+        try {
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+                Reader in = new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8);
+                Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+                assertEquals("HackerShell for HackerFS\n", HackerLoad.readResponse(in));
+                out.write("mkdir d1\ncd d1\npwd\n");
+                out.flush();
+                assertEquals("", HackerLoad.readResponse(in));
+                assertEquals("", HackerLoad.readResponse(in));
+                assertEquals("/d1/\n", HackerLoad.readResponse(in));
+            }
+
+            ByteArrayOutputStream summary = new ByteArrayOutputStream();
+            new HackerLoad(server.getPort(), 8, 100).run(new PrintStream(summary, true, "UTF-8"));
+            assertTrue(summary.toString("UTF-8").startsWith("8 clients, 800 commands"));
+            assertEquals("0 bytes in 0 files and 1 directories, largest file 0 bytes", fs.diskUsage());
+        } finally {
+            server.close();
+            serving.join();
+        }
+    }
+
+    @Test
+    public void testPercentile() {
+        long[] sorted = {1, 2, 3, 4, 5, 6, 7, 8, 9, 10};
+        assertEquals(5, HackerLoad.percentile(sorted, 50));
+        assertEquals(9, HackerLoad.percentile(sorted, 90));
+        assertEquals(10, HackerLoad.percentile(sorted, 99));
+        assertEquals(1, HackerLoad.percentile(sorted, 0));
+        assertThrows(IllegalArgumentException.class, () -> new HackerLoad(7070, 1, 0));
+        assertThrows(IllegalArgumentException.class, () -> new HackerLoad(7070, 0, 1));
+    }
+}
@@ -0,0 +1,99 @@
+import java.util.Objects;
+
+/**
+ * FSObject view of a node in an InodeTable. Views hold nothing but the node id and its generation, so they are cheap to
+ * create on demand and two views of the same node are equal. Once the node is removed, every method of its views
+ * throws IllegalStateException, even if the id has been reused for a new node.
+ */
+public class Inode implements FSObject {
+    private final InodeTable table;
+    private final int id;
+    private final int generation;
+
+    Inode(InodeTable table, int id, int generation) {
+        this.table = table;
+        this.id = id;
+        this.generation = generation;
+    }
+
+    // id getter
+    int getId() {
+        return live();
+    }
+
+    public boolean isDirectory() {
+        return this.table.type(live()) == InodeTable.DIRECTORY;
+    }
+
+    // name getter
+    @Override
+    public String getName() {
+        return this.table.name(live());
+    }
+
+    /**
+     * Renames the node.
+     *
+     * @param name the new name of the file system object
+     * @throws IllegalArgumentException if the name is invalid (see HackerFS.checkName) or the parent directory already
+     *                                  contains an entry with that name.
+     * @throws IllegalStateException    if the node has been removed.
+     */
+    @Override
+    public void setName(String name) {
+        HackerFS.checkName(name);
+        this.table.rename(live(), name);
+    }
+
+    // parent getter
+    @Override
+    public FSObject getParent() {
+        int parent = this.table.parent(live());
+        return parent == InodeTable.NONE ? null : this.table.node(parent);
+    }
+
+    /**
+     * Moves the node into another directory. Unlike File and Directory, this also updates the
+     * entries of the old and the new parent, since both are stored in the same table.
+     *
+     * @param parent the new parent, a directory of the same table
+     * @throws IllegalArgumentException if parent is not a directory of the same table or already contains an entry with the same name.
+     * @throws IllegalStateException    if this node or parent has been removed.
+     */
+    @Override
+    public void setParent(FSObject parent) {
+        if (!(parent instanceof Inode) || ((Inode) parent).table != this.table || !((Inode) parent).isDirectory()) {
+            throw new IllegalArgumentException("parent must be a directory of the same inode table");
+        }
+        this.table.move(live(), ((Inode) parent).live());
+    }
+
+    // calls corresponding function of InodeTable class
+    @Override
+    public String getPath() {
+        return this.table.path(live());
+    }
+
+    // calls corresponding function of InodeTable class
+    @Override
+    public void remove() throws NotEmpty {
+        this.table.remove(live());
+    }
+
+    // the id, if it still belongs to the node this view was created for
+    private int live() {
+        if (this.table.generation(this.id) != this.generation) throw new IllegalStateException("inode has been removed");
+        return this.id;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof Inode)) return false;
+        return ((Inode) o).table == this.table && ((Inode) o).id == this.id && ((Inode) o).generation == this.generation;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(System.identityHashCode(this.table), this.id, this.generation);
+    }
+}
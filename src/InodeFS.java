@@ -0,0 +1,236 @@
+import java.util.Optional;
+
+/**
+ * Alternative to HackerFS that keeps the whole tree in an InodeTable instead of File and Directory objects.
+ * It offers the same operations with the same output, and is meant for very large trees where per-node
+ * objects would dominate heap usage and GC time. In off-heap mode only file contents stay on the heap.
+ */
+public class InodeFS {
+    private final InodeTable table;
+    private int wd; // working directory
+
+    /**
+     * The constructor.
+     * <p>
+     * Create an empty file system and set the working directory to the root folder.
+     */
+    public InodeFS() {
+        this(1024, false);
+    }
+
+    /**
+     * @param capacity number of nodes to reserve space for
+     * @param offHeap  whether names, parent links and child tables are kept outside of the Java heap
+     */
+    public InodeFS(int capacity, boolean offHeap) {
+        this.table = new InodeTable(capacity, offHeap);
+        this.wd = InodeTable.ROOT;
+    }
+
+    /**
+     * @return FSObject view of the root directory
+     */
+    public Inode getRoot() {
+        return this.table.node(InodeTable.ROOT);
+    }
+
+    /**
+     * Check if the working directory contains an entry with a specific name
+     *
+     * @param name The name of the object
+     * @return If the object is found, return an Optional with a view of it. Otherwise return an empty Optional instance.
+     */
+    public Optional<Inode> contains(String name) {
+        int id = this.table.lookup(this.wd, name);
+        return id == InodeTable.NONE ? Optional.empty() : Optional.of(this.table.node(id));
+    }
+
+    /**
+     * @return number of files and directories, including the root folder.
+     */
+    public int getNodeCount() {
+        return this.table.nodeCount();
+    }
+
+    // ----------------------------------------------------
+    // Directory Functions
+
+    public void enterDirectory() {
+        this.wd = InodeTable.ROOT;
+    }
+
+    /**
+     * Changes the current working directory to a subdirectory.
+     *
+     * @param name of the directory that we want to enter
+     * @throws NoSuchFileOrDirectory if the directory name does not exist in the current working directory
+     */
+    public void enterDirectory(String name) throws NoSuchFileOrDirectory {
+        int id = this.table.lookup(this.wd, name);
+        if (id == InodeTable.NONE || this.table.type(id) != InodeTable.DIRECTORY)
+            throw new NoSuchFileOrDirectory("No such File or Directory");
+        this.wd = id;
+    }
+
+    /**
+     * Leave directory, i.e. change working directory to parent directory.
+     * If the current working directory is root, do nothing.
+     */
+    public void leaveDirectory() {
+        if (this.table.parent(this.wd) != InodeTable.NONE) {
+            this.wd = this.table.parent(this.wd);
+        }
+    }
+
+    /**
+     * Return the name of the current working directory.
+     *
+     * @return name of the working directory.
+     */
+    public String getWorkingDirectory() {
+        return this.table.path(this.wd);
+    }
+
+    /**
+     * Creates a new directory inside the current working directory.
+     *
+     * @param name of the new directory
+     * @throws AlreadyExists           if a file or directory with the same name already exists in the current working directory.
+     * @throws IllegalArgumentException if name is not a valid name (see HackerFS.checkName).
+     */
+    public void createDirectory(String name) throws AlreadyExists {
+        HackerFS.checkName(name);
+        this.table.create(this.wd, name, InodeTable.DIRECTORY);
+    }
+
+    // ----------------------------------------------------
+    // File Functions
+
+    /**
+     * Create a new empty File inside the current working directory.
+     *
+     * @param name of the new file
+     * @throws AlreadyExists           if a file or directory with the same name already exists in the current working directory.
+     * @throws IllegalArgumentException if name is not a valid name (see HackerFS.checkName).
+     */
+    public void createEmptyFile(String name) throws AlreadyExists {
+        HackerFS.checkName(name);
+        this.table.create(this.wd, name, InodeTable.FILE);
+    }
+
+    /**
+     * Writes to a file inside the current working directory.
+     *
+     * @param name    of the file data should be written to.
+     * @param content that should be written to the file. Existing content is overwritten.
+     * @throws NoSuchFileOrDirectory if no file with name exists in the current working directory.
+     */
+    public void writeFile(String name, String content) throws NoSuchFileOrDirectory {
+        this.table.setContent(file(name), content);
+    }
+
+    /**
+     * Read content from a file inside the current working directory.
+     *
+     * @param name of the file which should be read.
+     * @return content of the file
+     * @throws NoSuchFileOrDirectory if no file with name exists in the current working directory.
+     */
+    public String readFile(String name) throws NoSuchFileOrDirectory {
+        return this.table.content(file(name));
+    }
+
+    private int file(String name) throws NoSuchFileOrDirectory {
+        int id = this.table.lookup(this.wd, name);
+        if (id == InodeTable.NONE || this.table.type(id) != InodeTable.FILE)
+            throw new NoSuchFileOrDirectory("No such File or Directory");
+        return id;
+    }
+
+    // ----------------------------------------------------
+    // Functions involving both Files and Directories
+
+    /**
+     * Remove a file or an empty directory inside the current working directory.
+     *
+     * @param name of the file or directory
+     * @throws NoSuchFileOrDirectory if no file or directory exists
+     * @throws NotEmpty              in an attempt to remove a non-empty directory
+     */
+    public void remove(String name) throws NoSuchFileOrDirectory, NotEmpty {
+        int id = this.table.lookup(this.wd, name);
+        if (id == InodeTable.NONE) throw new NoSuchFileOrDirectory("No such File or Directory");
+        this.table.remove(id);
+    }
+
+    /**
+     * List contents of the working directory recursively, one element per line. Output is not sorted.
+     *
+     * @return Contents of the directory as multi-line String
+     */
+    public String list() {
+        StringBuilder stringBuilder = new StringBuilder();
+        for (int id = firstInSubtree(this.wd); id != InodeTable.NONE; id = nextInSubtree(id, this.wd)) {
+            stringBuilder.append(this.table.name(id)).append("\n");
+        }
+        return stringBuilder.toString();
+    }
+
+    /**
+     * Like list(), with the same additional information as Directory.listLong().
+     *
+     * @return Contents of the directory with additional information as multi-line String
+     */
+    public String listLong() {
+        StringBuilder stringBuilder = new StringBuilder();
+        for (int id = firstInSubtree(this.wd); id != InodeTable.NONE; id = nextInSubtree(id, this.wd)) {
+            if (this.table.type(id) == InodeTable.FILE) {
+                stringBuilder.append("f ").append(this.table.name(id)).append(" (size ").append(this.table.size(id)).append(")\n");
+            } else {
+                stringBuilder.append("d ")
+                        .append(this.table.name(id))
+                        .append(" (")
+                        .append(this.table.firstChild(id) == InodeTable.NONE ? "" : "not ")
+                        .append("empty)\n");
+            }
+        }
+        return stringBuilder.toString();
+    }
+
+    /**
+     * Find all files and directories within the working directory (and subsequent subdirectories).
+     *
+     * @return A multi-line String with the full path of found files and directories.
+     */
+    public String find() {
+        return find("");
+    }
+
+    /**
+     * Find all files and directories within the working directory (and subsequent subdirectories)
+     * whose name contains a certain searchTerm.
+     *
+     * @param searchTerm Term to search for in file and directory names.
+     * @return A multi-line String with the full path of found files and directories.
+     */
+    public String find(String searchTerm) {
+        StringBuilder stringBuilder = new StringBuilder();
+        for (int id = firstInSubtree(this.wd); id != InodeTable.NONE; id = nextInSubtree(id, this.wd)) {
+            if (this.table.name(id).contains(searchTerm)) stringBuilder.append(this.table.path(id)).append("\n");
+        }
+        return stringBuilder.toString();
+    }
+
+    // pre-order traversal without recursion, following the first child, sibling and parent links
+    private int firstInSubtree(int dir) {
+        return this.table.firstChild(dir);
+    }
+
+    private int nextInSubtree(int id, int dir) {
+        if (this.table.firstChild(id) != InodeTable.NONE) return this.table.firstChild(id);
+        for (int n = id; n != dir; n = this.table.parent(n)) {
+            if (this.table.nextSibling(n) != InodeTable.NONE) return this.table.nextSibling(n);
+        }
+        return InodeTable.NONE;
+    }
+}
@@ -0,0 +1,156 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InodeFSTest {
+    private InodeFS fs;
+
+    @BeforeEach
+    public void setUp() {
+        fs = new InodeFS(4, false);
+    }
+
+    @Test
+    public void testDirs() throws AlreadyExists, NoSuchFileOrDirectory {
+        assertEquals("/", fs.getWorkingDirectory());
+        fs.createDirectory("d1");
+        fs.createDirectory("d2");
+        assertThrows(AlreadyExists.class, () -> fs.createDirectory("d1"));
+        fs.enterDirectory("d1");
+        assertEquals("/d1/", fs.getWorkingDirectory());
+        assertThrows(NoSuchFileOrDirectory.class, () -> fs.enterDirectory("d3"));
+        fs.leaveDirectory();
+        assertEquals("/", fs.getWorkingDirectory());
+    }
+
+    @Test
+    public void testFiles() throws AlreadyExists, NoSuchFileOrDirectory {
+        fs.createEmptyFile("f1.txt");
+        assertNull(fs.readFile("f1.txt"));
+        fs.writeFile("f1.txt", "Hello World!");
+        assertEquals("Hello World!", fs.readFile("f1.txt"));
+        assertThrows(AlreadyExists.class, () -> fs.createEmptyFile("f1.txt"));
+        assertThrows(NoSuchFileOrDirectory.class, () -> fs.readFile("f2.txt"));
+        fs.writeFile("f1.txt", "Gr\u00fc\u00dfe \u20ac");
+        assertEquals("f f1.txt (size 11)", fs.listLong().trim());
+    }
+
+    @Test
+    public void testMixed() throws AlreadyExists, NoSuchFileOrDirectory, NotEmpty {
+        fs.createDirectory("d1");
+        fs.createDirectory("d2");
+        fs.enterDirectory("d1");
+        fs.createEmptyFile("f1.txt");
+        fs.writeFile("f1.txt", "Hello");
+        assertEquals("f f1.txt (size 5)", fs.listLong().trim());
+        fs.leaveDirectory();
+        assertEquals("/d1/f1.txt", fs.find("f1").trim());
+        assertTrue(fs.find().contains("/d2/"));
+        assertTrue(fs.listLong().contains("d d1 (not empty)"));
+        assertTrue(fs.listLong().contains("d d2 (empty)"));
+        assertThrows(NotEmpty.class, () -> fs.remove("d1"));
+        fs.enterDirectory("d1");
+        fs.remove("f1.txt");
+        fs.leaveDirectory();
+        fs.remove("d1");
+        assertEquals("d2", fs.list().trim());
+    }
+
+    @Test
+    public void testManyEntries() throws AlreadyExists, NoSuchFileOrDirectory, NotEmpty {
+        for (int i = 0; i < 1000; i++) fs.createEmptyFile("f" + i);
+        for (int i = 0; i < 1000; i += 2) fs.remove("f" + i);
+        for (int i = 1; i < 1000; i += 2) assertNull(fs.readFile("f" + i));
+        assertThrows(NoSuchFileOrDirectory.class, () -> fs.readFile("f10"));
+        assertEquals(500, fs.list().split("\n").length);
+    }
+
+    @Test
+    public void testOffHeapReusesRemovedSlots() throws AlreadyExists, NoSuchFileOrDirectory, NotEmpty {
+        InodeFS offHeap = new InodeFS(4, true);
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 100; i++) offHeap.createEmptyFile("f" + round + "-" + i);
+            offHeap.writeFile("f" + round + "-7", "content");
+            assertEquals("content", offHeap.readFile("f" + round + "-7"));
+            for (int i = 0; i < 100; i++) offHeap.remove("f" + round + "-" + i);
+        }
+        assertEquals("", offHeap.list());
+        assertEquals(1, offHeap.getNodeCount());
+    }
+
+    @Test
+    public void testInodeView() throws AlreadyExists, NoSuchFileOrDirectory {
+        fs.createDirectory("d1");
+        fs.createDirectory("d2");
+        fs.createEmptyFile("f1.txt");
+        Inode f1 = fs.contains("f1.txt").get();
+        Inode d2 = fs.contains("d2").get();
+        assertEquals(fs.getRoot(), f1.getParent());
+        f1.setName("f2.txt");
+        assertFalse(fs.contains("f1.txt").isPresent());
+        f1.setParent(d2);
+        assertEquals("/d2/f2.txt", f1.getPath());
+        assertThrows(IllegalArgumentException.class, () -> fs.getRoot().setParent(d2));
+        assertThrows(IllegalArgumentException.class, () -> d2.setName("d1"));
+    }
+
+    @Test
+    public void testRemovedInode() throws AlreadyExists, NoSuchFileOrDirectory, NotEmpty {
+        fs.createDirectory("d1");
+        fs.createEmptyFile("f1.txt");
+        Inode f1 = fs.contains("f1.txt").get();
+        Inode d1 = fs.contains("d1").get();
+        f1.remove();
+        assertThrows(IllegalStateException.class, f1::remove);
+        assertThrows(IllegalStateException.class, () -> f1.setParent(d1));
+        assertThrows(IllegalStateException.class, () -> f1.setName("f2.txt"));
+        assertEquals("d1\n", fs.list());
+        assertThrows(NotEmpty.class, () -> fs.getRoot().remove());
+        d1.remove();
+        fs.getRoot().remove();
+        assertEquals("", fs.list());
+    }
+
+    @Test
+    public void testStaleInodeView() throws AlreadyExists, NoSuchFileOrDirectory, NotEmpty {
+        fs.createEmptyFile("a");
+        Inode stale = fs.contains("a").get();
+        fs.remove("a");
+        fs.createEmptyFile("secret");
+        Inode secret = fs.contains("secret").get();
+        assertNotEquals(stale, secret);
+        assertThrows(IllegalStateException.class, stale::getName);
+        assertThrows(IllegalStateException.class, stale::remove);
+        assertThrows(IllegalStateException.class, () -> secret.setParent(stale));
+        assertEquals("/secret", secret.getPath());
+        assertEquals("secret\n", fs.list());
+    }
+
+    @Test
+    public void testSameOutputAsHackerFS() throws AlreadyExists, NoSuchFileOrDirectory, NotEmpty {
+        HackerFS hackerFS = new HackerFS();
+        for (int i = 0; i < 12; i++) {
+            fs.createDirectory("d" + i);
+            hackerFS.createDirectory("d" + i);
+            fs.createEmptyFile("f" + i);
+            hackerFS.createEmptyFile("f" + i);
+        }
+        fs.writeFile("f1", "Hello");
+        hackerFS.writeFile("f1", "Hello");
+        fs.remove("d3");
+        hackerFS.remove("d3");
+        fs.enterDirectory("d1");
+        hackerFS.enterDirectory("d1");
+        for (String name : new String[]{"c", "a", "b"}) {
+            fs.createEmptyFile(name + "1");
+            hackerFS.createEmptyFile(name + "1");
+        }
+        fs.enterDirectory();
+        hackerFS.enterDirectory();
+        assertEquals(hackerFS.list(), fs.list());
+        assertEquals(hackerFS.listLong(), fs.listLong());
+        assertEquals(hackerFS.find(), fs.find());
+        assertEquals(hackerFS.find("1"), fs.find("1"));
+    }
+}
@@ -0,0 +1,423 @@
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Node storage for InodeFS. Every node is an int id and all of its metadata lives in flat columns
+ * (struct of arrays), so a tree with millions of nodes needs no per-node Java objects apart from file contents.
+ * The columns are Slabs, kept either on the heap or off-heap.
+ * <p>
+ * Names are stored UTF-8 encoded in one slab; the name id of a node is the offset of its name there.
+ * Children of a directory form a doubly linked sibling list in insertion order, and an open addressing hash table keyed by
+ * (parent id, name) makes child lookup O(1). Ids of removed nodes are kept on a free list, linked through
+ * the sibling column, and handed out again before new ids. Each id also has a generation that is bumped when it
+ * is freed, so that views of a removed node can tell that the id now belongs to another node.
+ */
+class InodeTable {
+    static final int ROOT = 0;
+    static final int NONE = -1;
+    static final byte FREE = 0;
+    static final byte FILE = 1;
+    static final byte DIRECTORY = 2;
+
+    private final boolean offHeap;
+    private final Slab parent;
+    private final Slab firstChild;
+    private final Slab lastChild;
+    private final Slab nextSibling;
+    private final Slab prevSibling;
+    private final Slab nameId;
+    private final Slab size;
+    private final Slab type;
+    private final Slab generation;
+    private String[] content;
+    private int capacity;
+    private int count; // ids below count have been handed out
+    private int live;
+    private int freeList = NONE;
+
+    private final Slab names;
+    private int namesEnd;
+
+    private Slab slots; // node id + 1, 0 marks an empty slot
+    private int slotCount;
+    private int used;
+
+    /**
+     * The constructor. Creates the root directory with id ROOT and an empty name.
+     *
+     * @param capacity number of nodes to reserve space for
+     * @param offHeap  whether the columns are allocated outside of the Java heap
+     */
+    InodeTable(int capacity, boolean offHeap) {
+        this.offHeap = offHeap;
+        this.capacity = Math.max(capacity, 16);
+        this.parent = new Slab(offHeap, 4L * this.capacity);
+        this.firstChild = new Slab(offHeap, 4L * this.capacity);
+        this.lastChild = new Slab(offHeap, 4L * this.capacity);
+        this.nextSibling = new Slab(offHeap, 4L * this.capacity);
+        this.prevSibling = new Slab(offHeap, 4L * this.capacity);
+        this.nameId = new Slab(offHeap, 4L * this.capacity);
+        this.size = new Slab(offHeap, 4L * this.capacity);
+        this.type = new Slab(offHeap, this.capacity);
+        this.generation = new Slab(offHeap, 4L * this.capacity);
+        this.content = new String[this.capacity];
+        this.names = new Slab(offHeap, Math.max(16L * this.capacity, 1 << 16));
+        this.slotCount = Integer.highestOneBit(this.capacity) * 4;
+        this.slots = new Slab(offHeap, 4L * this.slotCount);
+        allocate(DIRECTORY, "");
+    }
+
+    // ----------------------------------------------------
+    // Node attributes
+
+    byte type(int id) {
+        return this.type.getByte(id);
+    }
+
+    int generation(int id) {
+        return this.generation.getInt(id);
+    }
+
+    int parent(int id) {
+        return this.parent.getInt(id);
+    }
+
+    int firstChild(int id) {
+        return this.firstChild.getInt(id);
+    }
+
+    int nextSibling(int id) {
+        return this.nextSibling.getInt(id);
+    }
+
+    int size(int id) {
+        return this.size.getInt(id);
+    }
+
+    String content(int id) {
+        return this.content[id];
+    }
+
+    void setContent(int id, String content) {
+        this.content[id] = content;
+        this.size.putInt(id, content == null ? 0 : content.getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    String name(int id) {
+        int offset = nameStart(id);
+        byte[] bytes = new byte[nameLength(id)];
+        for (int i = 0; i < bytes.length; i++) bytes[i] = this.names.getByte(offset + i);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the full path of a node, with a trailing "/" for directories.
+     */
+    String path(int id) {
+        Deque<String> parts = new ArrayDeque<>();
+        for (int n = id; parent(n) != NONE; n = parent(n)) parts.push(name(n));
+        StringBuilder path = new StringBuilder("/");
+        for (String part : parts) path.append(part).append('/');
+        if (type(id) == FILE) path.setLength(path.length() - 1);
+        return path.toString();
+    }
+
+    /**
+     * @return number of nodes in the table, including the root.
+     */
+    int nodeCount() {
+        return this.live;
+    }
+
+    boolean isOffHeap() {
+        return this.offHeap;
+    }
+
+    /**
+     * @return a lightweight FSObject view of the node.
+     */
+    Inode node(int id) {
+        return new Inode(this, id, generation(id));
+    }
+
+    // ----------------------------------------------------
+    // Tree operations
+
+    /**
+     * @return the id of the entry with that name in directory dir, or NONE.
+     */
+    int lookup(int dir, String name) {
+        byte[] key = name.getBytes(StandardCharsets.UTF_8);
+        int mask = this.slotCount - 1;
+        for (int i = hash(dir, key) & mask; ; i = (i + 1) & mask) {
+            int id = this.slots.getInt(i) - 1;
+            if (id == NONE) return NONE;
+            if (parent(id) == dir && nameEquals(id, key)) return id;
+        }
+    }
+
+    /**
+     * Creates a new entry in directory dir.
+     *
+     * @return id of the new node
+     * @throws AlreadyExists if dir already contains an entry with that name.
+     */
+    int create(int dir, String name, byte type) throws AlreadyExists {
+        if (lookup(dir, name) != NONE) throw new AlreadyExists(name + " already exists!");
+        int id = allocate(type, name);
+        link(id, dir);
+        return id;
+    }
+
+    /**
+     * Removes a file or an empty directory and puts its id on the free list. Like Directory.remove,
+     * removing the empty root does nothing.
+     *
+     * @throws NotEmpty if id is a non-empty directory.
+     * @throws IllegalStateException if id has already been removed.
+     */
+    void remove(int id) throws NotEmpty {
+        checkLive(id);
+        if (firstChild(id) != NONE) throw new NotEmpty("Directory is not empty!");
+        if (id == ROOT) return;
+        unlink(id);
+        this.type.putByte(id, FREE);
+        this.generation.putInt(id, generation(id) + 1);
+        this.content[id] = null;
+        this.nextSibling.putInt(id, this.freeList);
+        this.freeList = id;
+        this.live--;
+    }
+
+    /**
+     * Renames a node within its directory.
+     *
+     * @throws IllegalArgumentException if the directory already contains an entry with the new name.
+     * @throws IllegalStateException if id has been removed.
+     */
+    void rename(int id, String name) {
+        checkLive(id);
+        int dir = parent(id);
+        int existing = dir == NONE ? NONE : lookup(dir, name);
+        if (existing == id) return;
+        if (existing != NONE) throw new IllegalArgumentException(name + " already exists!");
+        if (dir != NONE) unindex(id);
+        this.nameId.putInt(id, storeName(name, nameId(id)));
+        if (dir != NONE) index(id);
+    }
+
+    /**
+     * Moves a node into another directory, keeping its name.
+     *
+     * @throws IllegalArgumentException if dir already contains an entry with the same name or is inside id.
+     * @throws IllegalStateException if id or dir has been removed.
+     */
+    void move(int id, int dir) {
+        checkLive(id);
+        checkLive(dir);
+        for (int n = dir; n != NONE; n = parent(n)) {
+            if (n == id) throw new IllegalArgumentException("cannot move a directory into itself");
+        }
+        if (lookup(dir, name(id)) != NONE) throw new IllegalArgumentException(name(id) + " already exists!");
+        unlink(id);
+        link(id, dir);
+    }
+
+    // ----------------------------------------------------
+    // Internals
+
+    // freed ids are no longer linked, so unlinking or unindexing them again would corrupt the table
+    private void checkLive(int id) {
+        if (type(id) == FREE) throw new IllegalStateException("node " + id + " has been removed");
+    }
+
+    private int allocate(byte type, String name) {
+        int id;
+        int oldName = NONE;
+        if (this.freeList != NONE) {
+            id = this.freeList;
+            this.freeList = nextSibling(id);
+            oldName = nameId(id);
+        } else {
+            if (this.count == this.capacity) grow();
+            id = this.count++;
+        }
+        this.live++;
+        this.type.putByte(id, type);
+        this.parent.putInt(id, NONE);
+        this.firstChild.putInt(id, NONE);
+        this.lastChild.putInt(id, NONE);
+        this.nextSibling.putInt(id, NONE);
+        this.prevSibling.putInt(id, NONE);
+        this.size.putInt(id, 0);
+        this.nameId.putInt(id, storeName(name, oldName));
+        return id;
+    }
+
+    private void grow() {
+        this.capacity *= 2;
+        this.parent.ensureCapacity(4L * this.capacity);
+        this.firstChild.ensureCapacity(4L * this.capacity);
+        this.lastChild.ensureCapacity(4L * this.capacity);
+        this.nextSibling.ensureCapacity(4L * this.capacity);
+        this.prevSibling.ensureCapacity(4L * this.capacity);
+        this.nameId.ensureCapacity(4L * this.capacity);
+        this.size.ensureCapacity(4L * this.capacity);
+        this.type.ensureCapacity(this.capacity);
+        this.generation.ensureCapacity(4L * this.capacity);
+        this.content = Arrays.copyOf(this.content, this.capacity);
+    }
+
+    private int nameId(int id) {
+        return this.nameId.getInt(id);
+    }
+
+    /**
+     * Stores a name in the name slab. The space of the previous name is reused if the new name fits.
+     *
+     * @param previous name id that is being replaced, or NONE
+     * @return the name id
+     */
+    private int storeName(String name, int previous) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        int needed = varintSize(bytes.length) + bytes.length;
+        if (needed > this.names.chunkBytes()) throw new IllegalArgumentException("name too long");
+        int offset;
+        if (previous != NONE && needed <= varintSize(decodeLength(previous)) + decodeLength(previous)
+                && varintSize(bytes.length) == varintSize(decodeLength(previous))) {
+            offset = previous;
+        } else {
+            if (this.names.remainingInChunk(this.namesEnd) < needed) {
+                this.namesEnd += this.names.remainingInChunk(this.namesEnd);
+            }
+            this.names.ensureCapacity((long) this.namesEnd + needed);
+            offset = this.namesEnd;
+            this.namesEnd += needed;
+        }
+        int position = offset;
+        int length = bytes.length;
+        while (length >= 0x80) {
+            this.names.putByte(position++, (byte) (length | 0x80));
+            length >>>= 7;
+        }
+        this.names.putByte(position++, (byte) length);
+        for (byte b : bytes) this.names.putByte(position++, b);
+        return offset;
+    }
+
+    private static int varintSize(int value) {
+        int size = 1;
+        while (value >= 0x80) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private int decodeLength(int offset) {
+        int length = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = this.names.getByte(offset++);
+            length |= (b & 0x7f) << shift;
+            shift += 7;
+        } while (b < 0);
+        return length;
+    }
+
+    private int nameLength(int id) {
+        return decodeLength(nameId(id));
+    }
+
+    private int nameStart(int id) {
+        return nameId(id) + varintSize(nameLength(id));
+    }
+
+    private boolean nameEquals(int id, byte[] key) {
+        if (nameLength(id) != key.length) return false;
+        int offset = nameStart(id);
+        for (int i = 0; i < key.length; i++) {
+            if (this.names.getByte(offset + i) != key[i]) return false;
+        }
+        return true;
+    }
+
+    private static int hash(int dir, byte[] bytes) {
+        int h = dir * 0x9E3779B9;
+        for (byte b : bytes) h = 31 * h + b;
+        return h ^ (h >>> 16);
+    }
+
+    private int hashOf(int id) {
+        int h = parent(id) * 0x9E3779B9;
+        int offset = nameStart(id);
+        int length = nameLength(id);
+        for (int i = 0; i < length; i++) h = 31 * h + this.names.getByte(offset + i);
+        return h ^ (h >>> 16);
+    }
+
+    // appends id to the children of dir, so that they are listed in insertion order like in HackerFS
+    private void link(int id, int dir) {
+        this.parent.putInt(id, dir);
+        int last = this.lastChild.getInt(dir);
+        this.prevSibling.putInt(id, last);
+        this.nextSibling.putInt(id, NONE);
+        if (last != NONE) this.nextSibling.putInt(last, id);
+        else this.firstChild.putInt(dir, id);
+        this.lastChild.putInt(dir, id);
+        index(id);
+    }
+
+    private void unlink(int id) {
+        unindex(id);
+        int prev = this.prevSibling.getInt(id);
+        int next = nextSibling(id);
+        if (prev != NONE) this.nextSibling.putInt(prev, next);
+        else this.firstChild.putInt(parent(id), next);
+        if (next != NONE) this.prevSibling.putInt(next, prev);
+        else this.lastChild.putInt(parent(id), prev);
+        this.parent.putInt(id, NONE);
+        this.nextSibling.putInt(id, NONE);
+        this.prevSibling.putInt(id, NONE);
+    }
+
+    private void index(int id) {
+        if ((this.used + 1) * 2 > this.slotCount) rehash(this.slotCount * 2, id);
+        int mask = this.slotCount - 1;
+        int i = hashOf(id) & mask;
+        while (this.slots.getInt(i) != 0) i = (i + 1) & mask;
+        this.slots.putInt(i, id + 1);
+        this.used++;
+    }
+
+    // linear probing deletion without tombstones: shift later entries of the probe chain back
+    private void unindex(int id) {
+        int mask = this.slotCount - 1;
+        int i = hashOf(id) & mask;
+        while (this.slots.getInt(i) != id + 1) i = (i + 1) & mask;
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            int other = this.slots.getInt(j) - 1;
+            if (other == NONE) break;
+            int k = hashOf(other) & mask;
+            boolean inPlace = i <= j ? (i < k && k <= j) : (i < k || k <= j);
+            if (inPlace) continue;
+            this.slots.putInt(i, other + 1);
+            i = j;
+        }
+        this.slots.putInt(i, 0);
+        this.used--;
+    }
+
+    // rebuilds the hash table from all linked nodes except pending, which is about to be indexed
+    private void rehash(int slotCount, int pending) {
+        this.slots = new Slab(this.offHeap, 4L * slotCount);
+        this.slotCount = slotCount;
+        this.used = 0;
+        for (int id = 0; id < this.count; id++) {
+            if (id != pending && type(id) != FREE && parent(id) != NONE) index(id);
+        }
+    }
+}
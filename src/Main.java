@@ -1,5 +1,5 @@
 import java.io.*;
-import java.util.*;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 public class Main {
@@ -30,95 +30,38 @@ public class Main {
         }
     }
 
-    public static void main(String[] args) throws IOException {
+    /**
+     * Without arguments, runs the HackerShell on the console.
+     * With "serve [port]", serves the HackerShell on a loopback port (default 7070), see HackerServer.
+     * With "load [port] [clients] [commands]", runs HackerLoad against such a server.
+     *
+     * @param args see above
+     * @throws IOException          if the console or a connection fails
+     * @throws InterruptedException if interrupted while generating load
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 7070;
+        if (args.length > 0 && args[0].equals("load")) {
+            int clients = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+            int commands = args.length > 3 ? Integer.parseInt(args[3]) : 1_000;
+            new HackerLoad(port, clients, commands).run(System.out);
+            return;
+        }
+
         HackerFS fs = new HackerFS();
 
         // create HackerFS clone of the project directory
         clone(fs, System.getProperty("user.dir"));
 
-        System.out.println("HackerShell for HackerFS");
-
-        boolean loop = true;
-        while (loop) {
-            System.out.print("$ ");
-            BufferedReader buffer = new BufferedReader(new InputStreamReader(System.in));
-            String input = buffer.readLine().trim();
-            String[] cmdargs = input.split(" ");
-            String cmd = cmdargs[0];
-            boolean hasArgs = cmdargs.length > 1;
-            List<String> onlyArgs = new ArrayList<>(Arrays.asList(cmdargs));
-            if (hasArgs) onlyArgs.remove(0);
-            switch (cmd.toLowerCase()) {
-                case "exit":
-                    loop = false;
-                    break;
-                case "ls":
-                    if (hasArgs) System.out.println("ls does not support operands");
-                    else System.out.print(fs.list());
-                    break;
-                case "ll":
-                    if (hasArgs) System.out.println("ll does not support operands");
-                    else System.out.print(fs.listLong());
-                    break;
-                case "pwd":
-                    System.out.println(fs.getWorkingDirectory());
-                    break;
-                case "mkdir":
-                    if (!hasArgs) System.out.println("missing operand");
-                    else {
-                        for (String d : onlyArgs) {
-                            try {
-                                fs.createDirectory(d);
-                            } catch (AlreadyExists alreadyExists) {
-                                System.out.println("AlreadyExists: " + alreadyExists.getMessage());
-                            }
-                        }
-                    }
-                    break;
-                case "rm":
-                    if (!hasArgs) System.out.println("missing operand");
-                    else {
-                        for (String d : onlyArgs) {
-                            try {
-                                fs.remove(d);
-                            } catch (NoSuchFileOrDirectory | NotEmpty ex) {
-                                System.out.println(ex.getClass().getName() + ": " + ex.getMessage());
-                            }
-                        }
-                    }
-                    break;
-                case "cd":
-                    if (cmdargs.length == 1) fs.enterDirectory();
-                    else if (cmdargs[1].equals(".."))
-                        fs.leaveDirectory();
-                    else {
-                        try {
-                            fs.enterDirectory(cmdargs[1]);
-                        } catch (NoSuchFileOrDirectory noSuchFileOrDirectory) {
-                            System.out.println("NoSuchFileOrDirectory: " + noSuchFileOrDirectory.getMessage());
-                        }
-                    }
-                    break;
-                case "cat":
-                    if (!hasArgs) System.out.println("missing operand");
-                    else {
-                        for (String f : onlyArgs) {
-                            try {
-                                System.out.println(fs.readFile(f));
-                            } catch (NoSuchFileOrDirectory ex) {
-                                System.out.println("NoSuchFileOrDirectory: " + ex.getMessage());
-                            }
-                        }
-                    }
-                    break;
-                case "find":
-                    if (!hasArgs) System.out.print(fs.find());
-                    else System.out.print(fs.find(cmdargs[1]));
-                    break;
-                default:
-                    System.out.println("Unknown command: " + cmd);
+        if (args.length > 0 && args[0].equals("serve")) {
+            try (HackerServer server = new HackerServer(fs, port)) {
+                System.out.println("Serving HackerShell on port " + server.getPort());
+                server.serve();
             }
+            return;
         }
 
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+        new HackerShell(fs.openSession(), in, System.out).run();
     }
 }
@@ -0,0 +1,67 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Trigram inverted index over the names of the files and directories of a tree. Every name is split into
+ * its substrings of length GRAM; a substring query only has to check the entries that contain all trigrams
+ * of the search term, instead of every entry of the tree.
+ * <p>
+ * The postings are concurrent sets, so entries are added, removed and queried from several threads at once.
+ * Directory holds lock shared for those, and exclusively while it indexes or unindexes a whole subtree.
+ * A posting set is never dropped once created, so that an add cannot put an entry into a set that a
+ * concurrent remove has just dropped.
+ */
+class NameIndex {
+    static final int GRAM = 3;
+
+    final StampedLock lock = new StampedLock();
+    private final Map<Long, Set<FSObject>> postings = new ConcurrentHashMap<>();
+
+    void add(FSObject e) {
+        for (long gram : grams(e.getName())) {
+            this.postings.computeIfAbsent(gram, k -> ConcurrentHashMap.newKeySet()).add(e);
+        }
+    }
+
+    /**
+     * @param name the name e is indexed under
+     */
+    void remove(FSObject e, String name) {
+        for (long gram : grams(name)) {
+            Set<FSObject> entries = this.postings.get(gram);
+            if (entries != null) entries.remove(e);
+        }
+    }
+
+    /**
+     * @param searchTerm at least GRAM characters long
+     * @return all indexed entries whose name contains searchTerm
+     */
+    List<FSObject> query(String searchTerm) {
+        List<Set<FSObject>> lists = new ArrayList<>();
+        Set<FSObject> smallest = null;
+        for (long gram : grams(searchTerm)) {
+            Set<FSObject> entries = this.postings.get(gram);
+            if (entries == null) return new ArrayList<>();
+            lists.add(entries);
+            if (smallest == null || entries.size() < smallest.size()) smallest = entries; // sizes change meanwhile
+        }
+        List<FSObject> found = new ArrayList<>();
+        for (FSObject candidate : smallest) {
+            boolean inAll = true;
+            for (int i = 0; i < lists.size() && inAll; i++) inAll = lists.get(i).contains(candidate);
+            if (inAll && candidate.getName().contains(searchTerm)) found.add(candidate);
+        }
+        return found;
+    }
+
+    // the distinct trigrams of s, three 16 bit chars packed into a long
+    private static Set<Long> grams(String s) {
+        Set<Long> grams = new HashSet<>();
+        for (int i = 0; i + GRAM <= s.length(); i++) {
+            grams.add(((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2));
+        }
+        return grams;
+    }
+}
@@ -0,0 +1,46 @@
+/**
+ * Describes a file or directory to be created by HackerFS.createEntries.
+ */
+public final class NewEntry {
+    private final String name;
+    private final boolean directory;
+    private final String content;
+
+    private NewEntry(String name, boolean directory, String content) {
+        this.name = name;
+        this.directory = directory;
+        this.content = content;
+    }
+
+    /**
+     * @param name    of the new file
+     * @param content of the new file, or null for an empty file
+     * @return a new file entry
+     */
+    public static NewEntry file(String name, String content) {
+        return new NewEntry(name, false, content);
+    }
+
+    /**
+     * @param name of the new directory
+     * @return a new directory entry
+     */
+    public static NewEntry directory(String name) {
+        return new NewEntry(name, true, null);
+    }
+
+    // name getter
+    public String getName() {
+        return this.name;
+    }
+
+    // true for directories, false for files
+    public boolean isDirectory() {
+        return this.directory;
+    }
+
+    // content getter, null for directories and empty files
+    public String getContent() {
+        return this.content;
+    }
+}
@@ -2,4 +2,12 @@ public class NoSuchFileOrDirectory extends Exception {
     public NoSuchFileOrDirectory(String message) {
         super(message);
     }
+
+    /**
+     * @param message            the detail message
+     * @param writableStackTrace false for misses that are expected and frequent, where filling in the stack trace would dominate the cost
+     */
+    public NoSuchFileOrDirectory(String message, boolean writableStackTrace) {
+        super(message, null, false, writableStackTrace);
+    }
 }
@@ -0,0 +1,74 @@
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Fork/join version of Directory.find(String). A task walks its directory like find does, but hands every
+ * subdirectory with at least FORK_THRESHOLD files and directories below it to a new task. A task returns its output as a list of
+ * text chunks and forked tasks in pre-order; joining them in that order makes the result identical to
+ * the sequential find.
+ */
+class ParallelFind extends RecursiveTask<List<Object>> {
+    private static final long serialVersionUID = 1L;
+
+    static final int FORK_THRESHOLD = 1_000;
+
+    private final Directory directory;
+    private final String searchTerm;
+
+    private ParallelFind(Directory directory, String searchTerm) {
+        this.directory = directory;
+        this.searchTerm = searchTerm;
+    }
+
+    /**
+     * @param directory  whose subtree is searched
+     * @param searchTerm Term to search for in file and directory names.
+     * @param pool       runs the tasks
+     * @return A multi-line String with the full path of found files and directories.
+     */
+    static String find(Directory directory, String searchTerm, ForkJoinPool pool) {
+        List<Object> parts = pool.invoke(new ParallelFind(directory, searchTerm));
+        StringBuilder stringBuilder = new StringBuilder();
+        Deque<Iterator<Object>> stack = new ArrayDeque<>();
+        stack.push(parts.iterator());
+        while (!stack.isEmpty()) {
+            if (!stack.peek().hasNext()) {
+                stack.pop();
+                continue;
+            }
+            Object part = stack.peek().next();
+            if (part instanceof ParallelFind) stack.push(((ParallelFind) part).join().iterator());
+            else stringBuilder.append((CharSequence) part);
+        }
+        return stringBuilder.toString();
+    }
+
+    @Override
+    protected List<Object> compute() {
+        List<Object> parts = new ArrayList<>();
+        StringBuilder chunk = new StringBuilder();
+        Deque<Iterator<FSObject>> stack = new ArrayDeque<>();
+        stack.push(this.directory.getContents().iterator());
+        while (!stack.isEmpty()) {
+            if (!stack.peek().hasNext()) {
+                stack.pop();
+                continue;
+            }
+            FSObject elt = stack.peek().next();
+            if (elt.getName().contains(this.searchTerm)) chunk.append(elt.getPath()).append("\n");
+            if (elt instanceof Directory) {
+                Directory subdirectory = (Directory) elt;
+                if (subdirectory.getFileCount() + subdirectory.getDirectoryCount() >= FORK_THRESHOLD) {
+                    parts.add(chunk);
+                    chunk = new StringBuilder();
+                    parts.add(new ParallelFind(subdirectory, this.searchTerm).fork());
+                } else {
+                    stack.push(subdirectory.getContents().iterator());
+                }
+            }
+        }
+        parts.add(chunk);
+        return parts;
+    }
+}
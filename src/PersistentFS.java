@@ -0,0 +1,281 @@
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Alternative to HackerFS whose tree is immutable. Every change builds a new version of the tree by copying
+ * the path from the root down to the changed directory, and shares everything else with the previous version;
+ * the entries of a directory are kept in a PersistentMap. The current version is published by a single
+ * reference, so taking a snapshot is O(1), and a snapshot never sees later changes.
+ * <p>
+ * Changes are serialized, reads never block and always see one consistent version.
+ * As in InodeFS, names refer to entries of the working directory. Listings are ordered by name.
+ */
+public class PersistentFS {
+    private static final class Node {
+        final String name;
+        final String content; // files only
+        final int size; // of the content in UTF-8 bytes, as File.getSize()
+        final PersistentMap<Node> children; // null for files
+
+        Node(String name, String content, PersistentMap<Node> children) {
+            this.name = name;
+            this.content = content;
+            this.size = content == null ? 0 : content.getBytes(StandardCharsets.UTF_8).length;
+            this.children = children;
+        }
+
+        boolean isDirectory() {
+            return this.children != null;
+        }
+    }
+
+    private volatile Node root;
+    private String[] wd; // names from the root to the working directory
+
+    /**
+     * The constructor.
+     * <p>
+     * Create an empty root folder and set the working directory to it.
+     */
+    public PersistentFS() {
+        this(new Node("", null, PersistentMap.empty()), new String[0]);
+    }
+
+    private PersistentFS(Node root, String[] wd) {
+        this.root = root;
+        this.wd = wd;
+    }
+
+    /**
+     * Captures the current state in O(1). The snapshot shares the whole tree with this file system, but neither
+     * sees changes made to the other afterwards. Its working directory starts at the current working directory.
+     *
+     * @return an independent PersistentFS with the current content
+     */
+    public PersistentFS snapshot() {
+        return new PersistentFS(this.root, this.wd);
+    }
+
+    // ----------------------------------------------------
+    // Directory Functions
+
+    public void enterDirectory() {
+        this.wd = new String[0];
+    }
+
+    /**
+     * Changes the current working directory to a subdirectory.
+     *
+     * @param name of the directory that we want to enter
+     * @throws NoSuchFileOrDirectory if the directory name does not exist in the current working directory
+     */
+    public void enterDirectory(String name) throws NoSuchFileOrDirectory {
+        Node node = workingDirectory(this.root).children.get(name);
+        if (node == null || !node.isDirectory()) throw new NoSuchFileOrDirectory("No such File or Directory");
+        String[] path = Arrays.copyOf(this.wd, this.wd.length + 1);
+        path[this.wd.length] = name;
+        this.wd = path;
+    }
+
+    /**
+     * Leave directory, i.e. change working directory to parent directory.
+     * If the current working directory is root, do nothing.
+     */
+    public void leaveDirectory() {
+        if (this.wd.length > 0) this.wd = Arrays.copyOf(this.wd, this.wd.length - 1);
+    }
+
+    /**
+     * Return the name of the current working directory.
+     *
+     * @return name of the working directory.
+     */
+    public String getWorkingDirectory() {
+        StringBuilder path = new StringBuilder("/");
+        for (String name : this.wd) path.append(name).append('/');
+        return path.toString();
+    }
+
+    /**
+     * Creates a new directory inside the current working directory.
+     *
+     * @param name of the new directory
+     * @throws AlreadyExists if a file or directory with the same name already exists in the current working directory.
+     */
+    public synchronized void createDirectory(String name) throws AlreadyExists {
+        Node dir = workingDirectory(this.root);
+        if (dir.children.get(name) != null) throw new AlreadyExists("Directory already exists!");
+        publish(dir.children.put(name, new Node(name, null, PersistentMap.empty())));
+    }
+
+    // ----------------------------------------------------
+    // File Functions
+
+    /**
+     * Create a new empty File inside the current working directory.
+     *
+     * @param name of the new file
+     * @throws AlreadyExists if a file or directory with the same name already exists in the current working directory.
+     */
+    public synchronized void createEmptyFile(String name) throws AlreadyExists {
+        Node dir = workingDirectory(this.root);
+        if (dir.children.get(name) != null)
+            throw new AlreadyExists("File or Directory already exists in the current working directory!");
+        publish(dir.children.put(name, new Node(name, null, null)));
+    }
+
+    /**
+     * Writes to a file inside the current working directory.
+     *
+     * @param name    of the file data should be written to.
+     * @param content that should be written to the file. Existing content is overwritten.
+     * @throws NoSuchFileOrDirectory if no file with name exists in the current working directory.
+     */
+    public synchronized void writeFile(String name, String content) throws NoSuchFileOrDirectory {
+        Node dir = workingDirectory(this.root);
+        file(dir, name);
+        publish(dir.children.put(name, new Node(name, content, null)));
+    }
+
+    /**
+     * Read content from a file inside the current working directory.
+     *
+     * @param name of the file which should be read.
+     * @return content of the file
+     * @throws NoSuchFileOrDirectory if no file with name exists in the current working directory.
+     */
+    public String readFile(String name) throws NoSuchFileOrDirectory {
+        return file(workingDirectory(this.root), name).content;
+    }
+
+    private static Node file(Node dir, String name) throws NoSuchFileOrDirectory {
+        Node node = dir.children.get(name);
+        if (node == null || node.isDirectory()) throw new NoSuchFileOrDirectory("No such File or Directory");
+        return node;
+    }
+
+    // ----------------------------------------------------
+    // Functions involving both Files and Directories
+
+    /**
+     * Remove a file or an empty directory inside the current working directory.
+     *
+     * @param name of the file or directory
+     * @throws NoSuchFileOrDirectory if no file or directory exists
+     * @throws NotEmpty              in an attempt to remove a non-empty directory
+     */
+    public synchronized void remove(String name) throws NoSuchFileOrDirectory, NotEmpty {
+        Node dir = workingDirectory(this.root);
+        Node node = dir.children.get(name);
+        if (node == null) throw new NoSuchFileOrDirectory("No such File or Directory");
+        if (node.isDirectory() && !node.children.isEmpty()) throw new NotEmpty("Directory is not empty!");
+        publish(dir.children.remove(name));
+    }
+
+    /**
+     * List contents of the working directory recursively, one element per line.
+     *
+     * @return Contents of the directory as multi-line String
+     */
+    public String list() {
+        StringBuilder stringBuilder = new StringBuilder();
+        walk(workingDirectory(this.root), (node, path) -> stringBuilder.append(node.name).append("\n"));
+        return stringBuilder.toString();
+    }
+
+    /**
+     * Like list(), with the same additional information as Directory.listLong().
+     *
+     * @return Contents of the directory with additional information as multi-line String
+     */
+    public String listLong() {
+        StringBuilder stringBuilder = new StringBuilder();
+        walk(workingDirectory(this.root), (node, path) -> {
+            if (!node.isDirectory()) {
+                stringBuilder.append("f ").append(node.name).append(" (size ").append(node.size).append(")\n");
+            } else {
+                stringBuilder.append("d ")
+                        .append(node.name)
+                        .append(" (")
+                        .append(node.children.isEmpty() ? "" : "not ")
+                        .append("empty)\n");
+            }
+        });
+        return stringBuilder.toString();
+    }
+
+    /**
+     * Find all files and directories within the working directory (and subsequent subdirectories).
+     *
+     * @return A multi-line String with the full path of found files and directories.
+     */
+    public String find() {
+        return find("");
+    }
+
+    /**
+     * Find all files and directories within the working directory (and subsequent subdirectories)
+     * whose name contains a certain searchTerm.
+     *
+     * @param searchTerm Term to search for in file and directory names.
+     * @return A multi-line String with the full path of found files and directories.
+     */
+    public String find(String searchTerm) {
+        StringBuilder stringBuilder = new StringBuilder();
+        walk(workingDirectory(this.root), (node, path) -> {
+            if (node.name.contains(searchTerm)) stringBuilder.append(path).append("\n");
+        });
+        return stringBuilder.toString();
+    }
+
+    // ----------------------------------------------------
+    // Helpers
+
+    private Node workingDirectory(Node root) {
+        Node dir = root;
+        for (String name : this.wd) dir = dir.children.get(name);
+        return dir;
+    }
+
+    /**
+     * Makes children the new entries of the working directory, by copying the directories from the root down to
+     * the working directory, and publishes the new root. Callers hold the lock.
+     */
+    private void publish(PersistentMap<Node> children) {
+        Node[] spine = new Node[this.wd.length + 1];
+        spine[0] = this.root;
+        for (int i = 0; i < this.wd.length; i++) spine[i + 1] = spine[i].children.get(this.wd[i]);
+        Node changed = new Node(spine[this.wd.length].name, null, children);
+        for (int i = this.wd.length - 1; i >= 0; i--) {
+            changed = new Node(spine[i].name, null, spine[i].children.put(this.wd[i], changed));
+        }
+        this.root = changed;
+    }
+
+    private interface Visitor {
+        void visit(Node node, String path);
+    }
+
+    // pre-order traversal without recursion, entries of each directory ordered by name
+    private void walk(Node dir, Visitor visitor) {
+        Deque<Node> nodes = new ArrayDeque<>();
+        Deque<String> paths = new ArrayDeque<>();
+        push(nodes, paths, dir, getWorkingDirectory());
+        while (!nodes.isEmpty()) {
+            Node node = nodes.pop();
+            String path = paths.pop();
+            visitor.visit(node, path);
+            if (node.isDirectory()) push(nodes, paths, node, path);
+        }
+    }
+
+    // pushes the entries of dir in reverse name order, so that they are popped in name order
+    private static void push(Deque<Node> nodes, Deque<String> paths, Node dir, String prefix) {
+        List<Node> entries = dir.children.values();
+        entries.sort(Comparator.comparing((Node n) -> n.name).reversed());
+        for (Node entry : entries) {
+            nodes.push(entry);
+            paths.push(entry.isDirectory() ? prefix + entry.name + "/" : prefix + entry.name);
+        }
+    }
+}
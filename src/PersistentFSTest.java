@@ -0,0 +1,109 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PersistentFSTest {
+    private PersistentFS fs;
+
+    @BeforeEach
+    public void setUp() {
+        fs = new PersistentFS();
+    }
+
+    @Test
+    public void testDirs() throws AlreadyExists, NoSuchFileOrDirectory {
+        assertEquals("/", fs.getWorkingDirectory());
+        fs.createDirectory("d1");
+        fs.createDirectory("d2");
+        assertThrows(AlreadyExists.class, () -> fs.createDirectory("d1"));
+        fs.enterDirectory("d1");
+        assertEquals("/d1/", fs.getWorkingDirectory());
+        assertThrows(NoSuchFileOrDirectory.class, () -> fs.enterDirectory("d3"));
+        fs.leaveDirectory();
+        assertEquals("/", fs.getWorkingDirectory());
+    }
+
+    @Test
+    public void testFiles() throws AlreadyExists, NoSuchFileOrDirectory {
+        fs.createEmptyFile("f1.txt");
+        assertNull(fs.readFile("f1.txt"));
+        fs.writeFile("f1.txt", "Hello World!");
+        assertEquals("Hello World!", fs.readFile("f1.txt"));
+        assertThrows(AlreadyExists.class, () -> fs.createEmptyFile("f1.txt"));
+        assertThrows(NoSuchFileOrDirectory.class, () -> fs.readFile("f2.txt"));
+        assertThrows(NoSuchFileOrDirectory.class, () -> fs.writeFile("f2.txt", ""));
+        fs.writeFile("f1.txt", "Gr\u00fc\u00dfe \u20ac");
+        assertEquals("f f1.txt (size 11)\n", fs.listLong());
+    }
+
+    @Test
+    public void testMixed() throws AlreadyExists, NoSuchFileOrDirectory, NotEmpty {
+        fs.createDirectory("d2");
+        fs.createDirectory("d1");
+        fs.enterDirectory("d1");
+        fs.createEmptyFile("f1.txt");
+        fs.writeFile("f1.txt", "Hello");
+        fs.enterDirectory();
+        assertEquals("d1\nf1.txt\nd2\n", fs.list());
+        assertEquals("d d1 (not empty)\nf f1.txt (size 5)\nd d2 (empty)\n", fs.listLong());
+        assertEquals("/d1/\n/d1/f1.txt\n/d2/\n", fs.find());
+        assertEquals("/d1/f1.txt\n", fs.find("f1"));
+        assertThrows(NotEmpty.class, () -> fs.remove("d1"));
+        fs.remove("d2");
+        assertThrows(NoSuchFileOrDirectory.class, () -> fs.remove("d2"));
+        fs.enterDirectory("d1");
+        fs.remove("f1.txt");
+        fs.leaveDirectory();
+        fs.remove("d1");
+        assertEquals("", fs.find());
+    }
+
+    @Test
+    public void testSnapshot() throws AlreadyExists, NoSuchFileOrDirectory, NotEmpty {
+        fs.createDirectory("d1");
+        fs.enterDirectory("d1");
+        fs.createEmptyFile("f1.txt");
+        fs.writeFile("f1.txt", "old");
+        PersistentFS snapshot = fs.snapshot();
+        fs.writeFile("f1.txt", "new");
+        fs.createEmptyFile("f2.txt");
+        snapshot.remove("f1.txt");
+        assertEquals("/d1/", snapshot.getWorkingDirectory());
+        assertEquals("", snapshot.list());
+        assertEquals("new", fs.readFile("f1.txt"));
+        fs.enterDirectory();
+        assertEquals("/d1/\n/d1/f1.txt\n/d1/f2.txt\n", fs.find());
+        PersistentFS second = fs.snapshot();
+        fs.enterDirectory("d1");
+        fs.remove("f2.txt");
+        second.enterDirectory("d1");
+        assertEquals("f1.txt\nf2.txt\n", second.list());
+    }
+
+    @Test
+    public void testManyEntries() throws AlreadyExists, NoSuchFileOrDirectory, NotEmpty {
+        // "Aa" and "BB" have the same hash code
+        String[] colliding = {"Aa", "BB", "AaAa", "AaBB", "BBAa", "BBBB"};
+        for (String name : colliding) fs.createEmptyFile(name);
+        for (int i = 0; i < 10_000; i++) fs.createEmptyFile("file-" + i);
+        PersistentFS snapshot = fs.snapshot();
+        for (int i = 0; i < 10_000; i += 2) fs.remove("file-" + i);
+        fs.remove("BB");
+        fs.remove("AaBB");
+        for (int i = 0; i < 10_000; i++) {
+            String name = "file-" + i;
+            assertNull(snapshot.readFile(name));
+            if (i % 2 == 0) assertThrows(NoSuchFileOrDirectory.class, () -> fs.readFile(name));
+            else assertNull(fs.readFile(name));
+        }
+        Set<String> names = new HashSet<>(Arrays.asList(fs.list().split("\n")));
+        assertEquals(5_000 + 4, names.size());
+        assertTrue(names.containsAll(Arrays.asList("Aa", "AaAa", "BBAa", "BBBB")));
+        assertEquals(10_000 + 6, snapshot.list().split("\n").length);
+    }
+}
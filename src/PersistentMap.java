@@ -0,0 +1,215 @@
+import java.util.*;
+
+/**
+ * Immutable map from names to values, implemented as a hash array mapped trie (HAMT). Every update returns a
+ * new map and leaves the old one unchanged; both share all nodes that the update did not touch, so an update
+ * copies at most one small node per level (at most 7 levels for 32 bit hashes).
+ * <p>
+ * A branch node keeps a bitmap of the 32 possible slots of its level and an array holding only the used ones.
+ * A slot holds either a leaf (one entry), a branch for the next 5 bits of the hash, or a collision node for
+ * different names with the same hash.
+ *
+ * @param <V> type of the values
+ */
+final class PersistentMap<V> {
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    private static final PersistentMap<?> EMPTY = new PersistentMap<>(new Branch(0, new Object[0]));
+
+    private static final class Leaf {
+        final int hash;
+        final String key;
+        final Object value;
+
+        Leaf(int hash, String key, Object value) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    private static final class Branch {
+        final int bitmap;
+        final Object[] slots; // Leaf, Branch or Collision
+
+        Branch(int bitmap, Object[] slots) {
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+    }
+
+    private static final class Collision {
+        final Leaf[] leaves; // all with the same hash
+
+        Collision(Leaf[] leaves) {
+            this.leaves = leaves;
+        }
+    }
+
+    private final Branch root;
+
+    private PersistentMap(Branch root) {
+        this.root = root;
+    }
+
+    /**
+     * @param <V> type of the values
+     * @return the empty map
+     */
+    @SuppressWarnings("unchecked")
+    static <V> PersistentMap<V> empty() {
+        return (PersistentMap<V>) EMPTY;
+    }
+
+    // spreads the higher bits of String.hashCode() into the lower levels
+    private static int hash(String key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    boolean isEmpty() {
+        return this.root.bitmap == 0;
+    }
+
+    /**
+     * @param key the name
+     * @return the value of key, or null
+     */
+    @SuppressWarnings("unchecked")
+    V get(String key) {
+        int hash = hash(key);
+        Branch branch = this.root;
+        for (int shift = 0; ; shift += BITS) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((branch.bitmap & bit) == 0) return null;
+            Object slot = branch.slots[Integer.bitCount(branch.bitmap & (bit - 1))];
+            if (slot instanceof Leaf) {
+                Leaf leaf = (Leaf) slot;
+                return leaf.key.equals(key) ? (V) leaf.value : null;
+            }
+            if (slot instanceof Collision) {
+                for (Leaf leaf : ((Collision) slot).leaves) {
+                    if (leaf.key.equals(key)) return (V) leaf.value;
+                }
+                return null;
+            }
+            branch = (Branch) slot;
+        }
+    }
+
+    /**
+     * @param key   the name
+     * @param value the new value of key, not null
+     * @return a map in which key maps to value
+     */
+    PersistentMap<V> put(String key, V value) {
+        return new PersistentMap<>(put(this.root, 0, new Leaf(hash(key), key, value)));
+    }
+
+    /**
+     * @param key the name
+     * @return a map without key, or this map if it does not contain key
+     */
+    PersistentMap<V> remove(String key) {
+        Object root = remove(this.root, 0, hash(key), key);
+        if (root == this.root) return this;
+        if (root == null) return empty();
+        if (root instanceof Branch) return new PersistentMap<>((Branch) root);
+        // a single entry or collision is left, which needs a branch at the top
+        return new PersistentMap<>(put(empty().root, 0, root));
+    }
+
+    /**
+     * @return the values, in no particular order
+     */
+    @SuppressWarnings("unchecked")
+    List<V> values() {
+        List<V> values = new ArrayList<>();
+        Deque<Object> pending = new ArrayDeque<>();
+        pending.push(this.root);
+        while (!pending.isEmpty()) {
+            Object slot = pending.pop();
+            if (slot instanceof Leaf) values.add((V) ((Leaf) slot).value);
+            else if (slot instanceof Collision) {
+                for (Leaf leaf : ((Collision) slot).leaves) values.add((V) leaf.value);
+            } else {
+                for (Object child : ((Branch) slot).slots) pending.push(child);
+            }
+        }
+        return values;
+    }
+
+    // adds a Leaf or Collision below branch, whose level starts at shift
+    private static Branch put(Branch branch, int shift, Object entry) {
+        int hash = entry instanceof Leaf ? ((Leaf) entry).hash : ((Collision) entry).leaves[0].hash;
+        int bit = 1 << ((hash >>> shift) & MASK);
+        int index = Integer.bitCount(branch.bitmap & (bit - 1));
+        if ((branch.bitmap & bit) == 0) {
+            Object[] slots = new Object[branch.slots.length + 1];
+            System.arraycopy(branch.slots, 0, slots, 0, index);
+            slots[index] = entry;
+            System.arraycopy(branch.slots, index, slots, index + 1, branch.slots.length - index);
+            return new Branch(branch.bitmap | bit, slots);
+        }
+        Object[] slots = branch.slots.clone();
+        slots[index] = merge(slots[index], shift + BITS, entry);
+        return new Branch(branch.bitmap, slots);
+    }
+
+    // combines the existing slot with a new Leaf or Collision, one level below shift
+    private static Object merge(Object slot, int shift, Object entry) {
+        if (slot instanceof Branch) return put((Branch) slot, shift, entry);
+        Leaf[] existing = slot instanceof Leaf ? new Leaf[]{(Leaf) slot} : ((Collision) slot).leaves;
+        Leaf leaf = (Leaf) entry; // a Collision is only re-added into an empty branch by remove
+        if (existing[0].hash != leaf.hash) return put(put(new Branch(0, new Object[0]), shift, slot), shift, entry);
+        for (int i = 0; i < existing.length; i++) {
+            if (existing[i].key.equals(leaf.key)) {
+                if (existing.length == 1) return leaf;
+                Leaf[] leaves = existing.clone();
+                leaves[i] = leaf;
+                return new Collision(leaves);
+            }
+        }
+        Leaf[] leaves = Arrays.copyOf(existing, existing.length + 1);
+        leaves[existing.length] = leaf;
+        return new Collision(leaves);
+    }
+
+    /**
+     * @return slot itself if key is not below it, null if nothing is left, a Leaf or Collision if only that is
+     * left (so that the caller can store it in place of a branch), or the updated slot
+     */
+    private static Object remove(Object slot, int shift, int hash, String key) {
+        if (slot instanceof Leaf) return ((Leaf) slot).key.equals(key) ? null : slot;
+        if (slot instanceof Collision) {
+            Leaf[] leaves = ((Collision) slot).leaves;
+            for (int i = 0; i < leaves.length; i++) {
+                if (!leaves[i].key.equals(key)) continue;
+                if (leaves.length == 2) return leaves[1 - i];
+                Leaf[] rest = new Leaf[leaves.length - 1];
+                System.arraycopy(leaves, 0, rest, 0, i);
+                System.arraycopy(leaves, i + 1, rest, i, leaves.length - i - 1);
+                return new Collision(rest);
+            }
+            return slot;
+        }
+        Branch branch = (Branch) slot;
+        int bit = 1 << ((hash >>> shift) & MASK);
+        if ((branch.bitmap & bit) == 0) return branch;
+        int index = Integer.bitCount(branch.bitmap & (bit - 1));
+        Object child = remove(branch.slots[index], shift + BITS, hash, key);
+        if (child == branch.slots[index]) return branch;
+        if (child == null) {
+            if (branch.slots.length == 1) return null;
+            if (branch.slots.length == 2 && !(branch.slots[1 - index] instanceof Branch)) return branch.slots[1 - index];
+            Object[] slots = new Object[branch.slots.length - 1];
+            System.arraycopy(branch.slots, 0, slots, 0, index);
+            System.arraycopy(branch.slots, index + 1, slots, index, slots.length - index);
+            return new Branch(branch.bitmap & ~bit, slots);
+        }
+        if (branch.slots.length == 1 && !(child instanceof Branch)) return child;
+        Object[] slots = branch.slots.clone();
+        slots[index] = child;
+        return new Branch(branch.bitmap, slots);
+    }
+}
@@ -0,0 +1,433 @@
+import java.io.IOException;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * A user of a HackerFS: a working directory in the shared tree of the HackerFS that opened it, see
+ * HackerFS.openSession(). Relative paths of all operations start at this working directory; everything else is
+ * shared, so a session costs two references and sessions do not wait for each other except on the directories
+ * they change (see Directory).
+ * <p>
+ * A session is meant to be used by one thread at a time. If another session removes the working directory,
+ * this session stays in the removed directory, like a process whose current directory was deleted: nothing can
+ * be created there (IllegalStateException), and enterDirectory() or an absolute path leads back into the tree.
+ */
+public class Session {
+    private final HackerFS fs;
+    private volatile Directory wd; // working directory
+
+    Session(HackerFS fs, Directory wd) {
+        this.fs = fs;
+        this.wd = wd;
+    }
+
+    // ----------------------------------------------------
+    // Directory Functions
+
+    public void enterDirectory() {
+        this.wd = this.fs.getRoot();
+    }
+
+    /**
+     * Changes the current working directory.
+     *
+     * @param name of the directory that we want to enter, or a path to it (see resolve)
+     * @throws NoSuchFileOrDirectory if the directory does not exist
+     */
+    public void enterDirectory(String name) throws NoSuchFileOrDirectory {
+        FSObject existingFSObject = resolve(name);
+        if (!(existingFSObject instanceof Directory)) throw HackerFS.noSuchFileOrDirectory();
+        this.wd = (Directory) existingFSObject;
+    }
+
+    /**
+     * Leave directory, i.e. change working directory to parent directory.
+     * If the current working directory is root, do nothing.
+     */
+    public void leaveDirectory() {
+        FSObject parent = this.wd.getParent();
+        if (parent != null) {
+            this.wd = (Directory) parent;
+        }
+    }
+
+    /**
+     * Return the name of the current working directory.
+     *
+     * @return name of the working directory, followed by " (deleted)" if it was removed
+     */
+    public String getWorkingDirectory() {
+        Directory wd = this.wd;
+        return wd.isRemoved() ? wd.getPath() + " (deleted)" : wd.getPath();
+    }
+
+    /**
+     * Creates a new directory inside the current working directory.
+     *
+     * @param name of the new directory
+     * @throws AlreadyExists           if a file or directory with the same name already exists in the current working directory.
+     * @throws IllegalArgumentException if name is not a valid name (see HackerFS.checkName).
+     */
+    public void createDirectory(String name) throws AlreadyExists {
+        createDirectory(name, false);
+    }
+
+    /**
+     * Creates a new directory inside the current working directory.
+     *
+     * @param name       of the new directory
+     * @param concurrent true for a directory that many threads create and remove entries in at once, e.g. a spool
+     *                   directory; see Directory(String, FSObject, boolean)
+     * @throws AlreadyExists           if a file or directory with the same name already exists in the current working directory.
+     * @throws IllegalArgumentException if name is not a valid name (see HackerFS.checkName).
+     */
+    public void createDirectory(String name, boolean concurrent) throws AlreadyExists {
+        HackerFS.checkName(name);
+        Directory wd = this.wd;
+        try {
+            wd.addEntry(new Directory(name, wd, concurrent)); // checks and inserts atomically
+        } catch (AlreadyExists alreadyExists) {
+            throw new AlreadyExists("Directory already exists!");
+        }
+    }
+
+    // ----------------------------------------------------
+    // File Functions
+
+    /**
+     * Create a new empty File inside the current working directory.
+     *
+     * @param name of the new file
+     * @throws AlreadyExists           if a file or directory with the same name already exists in the current working directory.
+     * @throws IllegalArgumentException if name is not a valid name (see HackerFS.checkName).
+     */
+    public void createEmptyFile(String name) throws AlreadyExists {
+        HackerFS.checkName(name);
+        Directory wd = this.wd;
+        try {
+            wd.addEntry(new File(name, wd)); // checks and inserts atomically
+        } catch (AlreadyExists alreadyExists) {
+            throw new AlreadyExists("File or Directory already exists in the current working directory!");
+        }
+    }
+
+    /**
+     * Create many files and directories inside the current working directory at once.
+     * Duplicates are detected in a single pass and the directory is grown once for the whole batch,
+     * which is much faster than one createEmptyFile and writeFile per entry for large imports.
+     *
+     * @param entries the files (with their content) and directories to create
+     * @throws AlreadyExists if some names already exist in the working directory or occur twice in entries.
+     *                       All other entries are still created; see Directory.addEntries.
+     * @throws IllegalArgumentException if some name is not a valid name (see HackerFS.checkName). Nothing is created then.
+     */
+    public void createEntries(Collection<NewEntry> entries) throws AlreadyExists {
+        for (NewEntry entry : entries) HackerFS.checkName(entry.getName());
+        Directory wd = this.wd;
+        List<FSObject> created = new ArrayList<>(entries.size());
+        for (NewEntry entry : entries) {
+            if (entry.isDirectory()) {
+                created.add(new Directory(entry.getName(), wd));
+            } else {
+                File file = new File(entry.getName(), wd);
+                if (entry.getContent() != null) file.setContent(entry.getContent());
+                created.add(file);
+            }
+        }
+        wd.addEntries(created);
+    }
+
+    /**
+     * Writes to a file inside the current working directory.
+     *
+     * @param name    of the file data should be written to, or a path to it (see resolve)
+     * @param content that should be written to the file. Existing content is overwritten.
+     * @throws NoSuchFileOrDirectory if no such file exists.
+     */
+    public void writeFile(String name, String content) throws NoSuchFileOrDirectory {
+        FSObject existingFSObject = resolve(name);
+        if (!(existingFSObject instanceof File)) throw HackerFS.noSuchFileOrDirectory();
+        ((File) existingFSObject).setContent(content);
+    }
+
+    /**
+     * Writes bytes to a file inside the current working directory.
+     *
+     * @param name    of the file data should be written to, or a path to it (see resolve)
+     * @param content that should be written to the file. Existing content is overwritten.
+     * @throws NoSuchFileOrDirectory if no such file exists.
+     */
+    public void writeFileBytes(String name, byte[] content) throws NoSuchFileOrDirectory {
+        FSObject existingFSObject = resolve(name);
+        if (!(existingFSObject instanceof File)) throw HackerFS.noSuchFileOrDirectory();
+        ((File) existingFSObject).setContentBytes(content);
+    }
+
+    /**
+     * Read content from a file inside the current working directory.
+     *
+     * @param name of the file which should be read, or a path to it (see resolve)
+     * @return content of the file
+     * @throws NoSuchFileOrDirectory if no such file exists.
+     */
+    public String readFile(String name) throws NoSuchFileOrDirectory {
+        FSObject existingFSObject = resolve(name);
+        if (!(existingFSObject instanceof File)) throw HackerFS.noSuchFileOrDirectory();
+        return ((File) existingFSObject).getContent();
+    }
+
+    /**
+     * Read content from a file inside the current working directory as bytes.
+     *
+     * @param name of the file which should be read, or a path to it (see resolve)
+     * @return a copy of the content of the file, or null if nothing was written
+     * @throws NoSuchFileOrDirectory if no such file exists.
+     */
+    public byte[] readFileBytes(String name) throws NoSuchFileOrDirectory {
+        FSObject existingFSObject = resolve(name);
+        if (!(existingFSObject instanceof File)) throw HackerFS.noSuchFileOrDirectory();
+        return ((File) existingFSObject).getContentBytes();
+    }
+
+    // ----------------------------------------------------
+    // Functions involving both Files and Directories
+
+    /**
+     * Remove a file or an empty directory.
+     *
+     * @param name of the file or directory, or a path to it (see resolve)
+     * @throws NoSuchFileOrDirectory if no file or directory exists
+     * @throws NotEmpty              in an attempt to remove a non-empty directory
+     */
+    public void remove(String name) throws NoSuchFileOrDirectory, NotEmpty {
+        resolve(name).remove();
+    }
+
+    /**
+     * Remove a file or a directory with everything below it (rm -r). The subtree disappears immediately,
+     * its nodes are released on a background thread, so this returns quickly even for huge subtrees.
+     * If the working directory was inside the removed directory, the parent of the removed directory becomes
+     * the working directory. Removing the root folder removes all of its entries.
+     *
+     * @param name of the file or directory, or a path to it (see resolve)
+     * @throws NoSuchFileOrDirectory if no file or directory exists
+     */
+    public void removeRecursive(String name) throws NoSuchFileOrDirectory {
+        FSObject existingFSObject = resolve(name);
+        Directory root = this.fs.getRoot();
+        if (existingFSObject == root) {
+            for (FSObject e : new ArrayList<>(root.getContents())) removeRecursive(e);
+        } else {
+            removeRecursive(existingFSObject);
+        }
+    }
+
+    private void removeRecursive(FSObject e) {
+        if (e instanceof File) {
+            ((File) e).remove();
+            return;
+        }
+        Directory directory = (Directory) e;
+        Directory wd = this.wd;
+        if (directory == wd || directory.isAncestorOf(wd)) this.wd = (Directory) directory.getParent();
+        this.fs.removeRecursive(directory);
+    }
+
+    /**
+     * Move or rename a file or directory (mv). If target is an existing directory, the source is moved into it and
+     * keeps its name. Otherwise target names the new location, whose parent directory has to exist.
+     * The node is relinked in O(1) and atomically (see Directory.move); nothing below it is copied. Only the
+     * dentry cache entries below a moved directory are dropped, but moving a directory makes every memoized
+     * path of this file system stale (they are recomputed on their next use, see Directory.getPath()).
+     *
+     * @param source the file or directory to move, or a path to it (see resolve)
+     * @param target the new location, or a directory to move it into (see resolve)
+     * @throws NoSuchFileOrDirectory    if the source or the parent directory of the target does not exist
+     * @throws AlreadyExists            if the target directory already has an entry with that name
+     * @throws IllegalArgumentException in an attempt to move the root folder, or a directory into itself
+     */
+    public void move(String source, String target) throws NoSuchFileOrDirectory, AlreadyExists {
+        FSObject e = resolve(source);
+        if (e == this.fs.getRoot()) throw new IllegalArgumentException("Cannot move the root folder!");
+        Target t = resolveTarget(e, target);
+        if (t == null) return;
+        String prefix = e.getPath();
+        Directory.move(e, (Directory) e.getParent(), t.directory, t.name);
+        if (e instanceof Directory) this.fs.forgetPaths(prefix);
+    }
+
+    /**
+     * Copy a file or a directory with everything below it (cp -r), with the same target rules as move.
+     * Copied files share their content with the originals, so copying takes time and memory per file and
+     * directory, but not per byte of content. Writing to either side afterwards does not affect the other.
+     *
+     * @param source the file or directory to copy, or a path to it (see resolve)
+     * @param target the location of the copy, or a directory to copy it into (see resolve)
+     * @throws NoSuchFileOrDirectory if the source or the parent directory of the target does not exist
+     * @throws AlreadyExists         if the target already exists and is not a directory, or the target directory
+     *                               already has an entry with that name
+     */
+    public void copy(String source, String target) throws NoSuchFileOrDirectory, AlreadyExists {
+        FSObject e = resolve(source);
+        Target t = resolveTarget(e, target);
+        if (t == null) throw new AlreadyExists(e.getPath() + " already exists!");
+        if (e instanceof Directory) t.directory.addEntry(((Directory) e).copy(t.name, t.directory));
+        else t.directory.addEntry(((File) e).copy(t.name, t.directory));
+    }
+
+    // where move and copy put an entry: a directory and the name of the entry in it
+    private static class Target {
+        final Directory directory;
+        final String name;
+
+        Target(Directory directory, String name) {
+            this.directory = directory;
+            this.name = name;
+        }
+    }
+
+    /**
+     * @param e      the entry that is moved or copied
+     * @param target an existing directory to put e into, or the path of the new entry
+     * @return the location for e, or null if target is e itself
+     */
+    private Target resolveTarget(FSObject e, String target) throws NoSuchFileOrDirectory, AlreadyExists {
+        FSObject existingFSObject = null;
+        try {
+            existingFSObject = resolve(target);
+        } catch (NoSuchFileOrDirectory ignored) {
+            // target names the new entry
+        }
+        if (existingFSObject == e) return null;
+        Target t;
+        if (existingFSObject instanceof Directory) {
+            t = new Target((Directory) existingFSObject, e.getName());
+        } else if (existingFSObject != null) {
+            throw new AlreadyExists(existingFSObject.getPath() + " already exists!");
+        } else {
+            String path = target;
+            while (path.length() > 1 && path.endsWith("/")) path = path.substring(0, path.length() - 1);
+            int slash = path.lastIndexOf('/');
+            String name = path.substring(slash + 1);
+            if (name.equals(".") || name.equals("..")) throw HackerFS.noSuchFileOrDirectory();
+            FSObject parent = slash < 0 ? this.wd : resolve(slash == 0 ? "/" : path.substring(0, slash));
+            if (!(parent instanceof Directory)) throw HackerFS.noSuchFileOrDirectory();
+            t = new Target((Directory) parent, name);
+        }
+        if (t.directory.contains(t.name).isPresent()) {
+            throw new AlreadyExists(t.directory.getPath() + t.name + " already exists!");
+        }
+        return t;
+    }
+
+    /**
+     * Summarize the disk usage of the working directory. Answered from the directory's aggregates in O(1).
+     *
+     * @return e.g. "11 bytes in 2 files and 1 directories, largest file 6 bytes"
+     */
+    public String diskUsage() {
+        return diskUsage(this.wd);
+    }
+
+    /**
+     * Summarize the disk usage of a directory. Answered from the directory's aggregates in O(1).
+     *
+     * @param path of the directory (see resolve)
+     * @return e.g. "11 bytes in 2 files and 1 directories, largest file 6 bytes"
+     * @throws NoSuchFileOrDirectory if no such directory exists
+     */
+    public String diskUsage(String path) throws NoSuchFileOrDirectory {
+        FSObject existingFSObject = resolve(path);
+        if (!(existingFSObject instanceof Directory)) throw HackerFS.noSuchFileOrDirectory();
+        return diskUsage((Directory) existingFSObject);
+    }
+
+    private static String diskUsage(Directory directory) {
+        return directory.getTotalSize() + " bytes in " + directory.getFileCount() + " files and "
+                + directory.getDirectoryCount() + " directories, largest file " + directory.getMaxFileSize() + " bytes";
+    }
+
+    /**
+     * Resolves a path to a file or directory. Absolute paths start at the root folder, all others at the
+     * working directory. "." and empty components are skipped, ".." moves to the parent (and stays at the root).
+     * Resolved directories are cached by their absolute path, so repeated accesses below the same directory
+     * skip the walk from the root.
+     *
+     * @param path e.g. "f1.txt", "d1/f1.txt", "../d2" or "/d1/../d2/f2.txt"
+     * @return the file or directory
+     * @throws NoSuchFileOrDirectory if a component of the path does not exist or is not a directory
+     */
+    public FSObject resolve(String path) throws NoSuchFileOrDirectory {
+        return this.fs.resolve(path, this.wd);
+    }
+
+    /**
+     * Keep the entries of the working directory ordered by name. See Directory.enableSortedIndex().
+     */
+    public void enableSortedIndex() {
+        this.wd.enableSortedIndex();
+    }
+
+    /**
+     * List the entries of the working directory (not of its subdirectories) whose name starts with prefix,
+     * ordered by name, one per line.
+     *
+     * @param prefix the names have to start with
+     * @return the names as multi-line String
+     */
+    public String listPrefix(String prefix) {
+        StringBuilder stringBuilder = new StringBuilder();
+        for (FSObject elt : this.wd.entriesWithPrefix(prefix)) stringBuilder.append(elt.getName()).append("\n");
+        return stringBuilder.toString();
+    }
+
+    // calls corresponding function of Directory class
+    public String list() {
+        return this.wd.list();
+    }
+
+    // calls corresponding function of Directory class
+    public void list(Appendable out) throws IOException {
+        this.wd.list(out);
+    }
+
+    // calls corresponding function of Directory class
+    public String listLong() {
+        return this.wd.listLong();
+    }
+
+    // calls corresponding function of Directory class
+    public void listLong(Appendable out) throws IOException {
+        this.wd.listLong(out);
+    }
+
+    // calls corresponding function of Directory class
+    public String find() {
+        return this.wd.find();
+    }
+
+    // calls corresponding function of Directory class
+    public void find(Appendable out) throws IOException {
+        this.wd.find(out);
+    }
+
+    // calls corresponding function of Directory class
+    public String find(String name) {
+        return this.wd.find(name);
+    }
+
+    // calls corresponding function of Directory class
+    public void find(String name, Appendable out) throws IOException {
+        this.wd.find(name, out);
+    }
+
+    // calls corresponding function of Directory class
+    public String findParallel(String name) {
+        return this.wd.findParallel(name);
+    }
+
+    // calls corresponding function of Directory class
+    public Stream<FSObject> walk() {
+        return this.wd.walk();
+    }
+}
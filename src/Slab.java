@@ -0,0 +1,79 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Growable storage for ints and bytes, allocated in large fixed size chunks either on the Java heap or
+ * off-heap in direct ByteBuffers. Growing adds chunks and never copies existing data.
+ * <p>
+ * Int values are addressed by index, bytes by offset. A value never spans two chunks.
+ * The chunk size follows the initial capacity, between 4 KB and 4 MB.
+ */
+class Slab {
+    private static final int MIN_CHUNK_SHIFT = 12;
+    private static final int MAX_CHUNK_SHIFT = 22;
+
+    private final boolean offHeap;
+    private final int chunkShift;
+    private final int chunkMask;
+    private ByteBuffer[] chunks = new ByteBuffer[0];
+
+    /**
+     * The constructor.
+     *
+     * @param offHeap whether chunks are allocated outside of the Java heap
+     * @param bytes   initial capacity in bytes
+     */
+    Slab(boolean offHeap, long bytes) {
+        this.offHeap = offHeap;
+        int shift = 64 - Long.numberOfLeadingZeros(Math.max(bytes - 1, 1));
+        this.chunkShift = Math.max(MIN_CHUNK_SHIFT, Math.min(MAX_CHUNK_SHIFT, shift));
+        this.chunkMask = (1 << this.chunkShift) - 1;
+        ensureCapacity(bytes);
+    }
+
+    /**
+     * @return capacity in bytes
+     */
+    long capacity() {
+        return (long) this.chunks.length << this.chunkShift;
+    }
+
+    void ensureCapacity(long bytes) {
+        int needed = (int) ((bytes + this.chunkMask) >>> this.chunkShift);
+        if (needed <= this.chunks.length) return;
+        int old = this.chunks.length;
+        this.chunks = Arrays.copyOf(this.chunks, needed);
+        for (int i = old; i < this.chunks.length; i++) {
+            this.chunks[i] = this.offHeap ? ByteBuffer.allocateDirect(1 << this.chunkShift) : ByteBuffer.allocate(1 << this.chunkShift);
+        }
+    }
+
+    int getInt(long index) {
+        long offset = index << 2;
+        return this.chunks[(int) (offset >>> this.chunkShift)].getInt((int) (offset & this.chunkMask));
+    }
+
+    void putInt(long index, int value) {
+        long offset = index << 2;
+        this.chunks[(int) (offset >>> this.chunkShift)].putInt((int) (offset & this.chunkMask), value);
+    }
+
+    byte getByte(long offset) {
+        return this.chunks[(int) (offset >>> this.chunkShift)].get((int) (offset & this.chunkMask));
+    }
+
+    void putByte(long offset, byte value) {
+        this.chunks[(int) (offset >>> this.chunkShift)].put((int) (offset & this.chunkMask), value);
+    }
+
+    int chunkBytes() {
+        return 1 << this.chunkShift;
+    }
+
+    /**
+     * @return bytes left in the chunk that contains offset
+     */
+    int remainingInChunk(long offset) {
+        return (1 << this.chunkShift) - (int) (offset & this.chunkMask);
+    }
+}
@@ -0,0 +1,126 @@
+import java.io.IOException;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Depth-first traversal of a directory tree. The walker keeps an explicit stack with one entry per open
+ * directory instead of recursing, so trees of any depth can be walked without a StackOverflowError.
+ * <p>
+ * Entries directly inside the start directory have depth 1. Directories at maxDepth are visited, but
+ * their contents are not.
+ */
+public class TreeWalker {
+    /**
+     * Receives the entries of a walk.
+     */
+    public interface Visitor {
+        /**
+         * Called for every entry before the contents of a directory are visited (pre-order).
+         *
+         * @param elt   the file or directory
+         * @param depth of the entry below the start directory
+         * @return false to skip the contents of a directory
+         * @throws IOException to abort the walk
+         */
+        boolean visit(FSObject elt, int depth) throws IOException;
+
+        /**
+         * Called for every entry after the contents of a directory were visited (post-order).
+         * Also called for pruned directories and files.
+         *
+         * @param elt   the file or directory
+         * @param depth of the entry below the start directory
+         * @throws IOException to abort the walk
+         */
+        default void leave(FSObject elt, int depth) throws IOException {
+        }
+    }
+
+    private final int maxDepth;
+
+    public TreeWalker() {
+        this(Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param maxDepth deepest level whose entries are visited, at least 1
+     */
+    public TreeWalker(int maxDepth) {
+        if (maxDepth < 1) throw new IllegalArgumentException("maxDepth must be at least 1");
+        this.maxDepth = maxDepth;
+    }
+
+    private static class Frame {
+        final Directory directory;
+        final Iterator<FSObject> entries;
+        final int depth;
+
+        Frame(Directory directory, int depth) {
+            this.directory = directory;
+            this.entries = directory.getContents().iterator();
+            this.depth = depth;
+        }
+    }
+
+    /**
+     * Walks all files and directories below start.
+     *
+     * @param start   the directory whose contents are walked; it is not visited itself
+     * @param visitor receives the entries
+     * @throws IOException if the visitor throws
+     */
+    public void walk(Directory start, Visitor visitor) throws IOException {
+        Deque<Frame> stack = new ArrayDeque<>();
+        stack.push(new Frame(start, 0));
+        while (!stack.isEmpty()) {
+            Frame top = stack.peek();
+            if (top.entries.hasNext()) {
+                FSObject elt = top.entries.next();
+                int depth = top.depth + 1;
+                boolean descend = visitor.visit(elt, depth);
+                if (descend && elt instanceof Directory && depth < this.maxDepth) stack.push(new Frame((Directory) elt, depth));
+                else visitor.leave(elt, depth);
+            } else {
+                stack.pop();
+                if (!stack.isEmpty()) visitor.leave(top.directory, top.depth);
+            }
+        }
+    }
+
+    /**
+     * @param start the directory whose contents are walked; it is not included
+     * @return a lazy pre-order iterator over all files and directories below start
+     */
+    public Iterator<FSObject> iterator(Directory start) {
+        Deque<Frame> stack = new ArrayDeque<>();
+        stack.push(new Frame(start, 0));
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                while (!stack.isEmpty() && !stack.peek().entries.hasNext()) stack.pop();
+                return !stack.isEmpty();
+            }
+
+            @Override
+            public FSObject next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                Frame top = stack.peek();
+                FSObject elt = top.entries.next();
+                if (elt instanceof Directory && top.depth + 1 < TreeWalker.this.maxDepth) {
+                    stack.push(new Frame((Directory) elt, top.depth + 1));
+                }
+                return elt;
+            }
+        };
+    }
+
+    /**
+     * @param start the directory whose contents are walked; it is not included
+     * @return a lazy, sequential pre-order Stream over all files and directories below start
+     */
+    public Stream<FSObject> stream(Directory start) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator(start),
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+}